@@ -0,0 +1,330 @@
+/**
+ * This is the cache of the book search results.
+ * The cache is bounded by the number of entries and by the estimated
+ * size of the books it holds, the least recently used entry goes first.
+ * An entry is only dropped when a written book could appear in it,
+ * that is when the book is on that page or matches its keyword, and
+ * every entry expires after a while in case a write was missed.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.caches;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import myapp.book.dto.PaginationDto;
+import myapp.book.dto.SearchDto;
+import myapp.book.dto.book.BookSummaryDto;
+import myapp.book.entities.Book;
+import myapp.book.indexes.BookIndex;
+
+@Component
+public class BookSearchCache {
+
+  /**
+   * This is the normalized search request.
+   */
+  @ToString
+  @EqualsAndHashCode
+  public static class Key {
+    private final String search;
+    // the terms of the search, so a write does not tokenize it again
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final List<String> terms;
+    private final int page;
+    private final int size;
+    private final String sort;
+    private final String order;
+    private final boolean fuzzy;
+    private final boolean includeDeleted;
+
+    private Key(SearchDto searchDto) {
+      this.search = searchDto.getSearch().toLowerCase(Locale.ROOT);
+      this.terms = BookIndex.tokenize(this.search);
+      this.page = searchDto.getPage();
+      this.size = searchDto.getSize();
+      this.sort = searchDto.getSort();
+      this.order = String.valueOf(searchDto.getOrder());
+      this.fuzzy = searchDto.isFuzzy();
+      this.includeDeleted = searchDto.isIncludeDeleted();
+    }
+  }
+
+  private static class Entry {
+    private final PaginationDto<BookSummaryDto> data;
+    private final Set<Integer> ids = new HashSet<>();
+    private final long weight;
+    private final long expiresAt;
+
+    private Entry(PaginationDto<BookSummaryDto> data, long expiresAt) {
+      this.data = data;
+      this.expiresAt = expiresAt;
+      long weight = 64;
+      for (BookSummaryDto book : data.getList()) {
+        ids.add(book.getId());
+        weight += weightOf(book);
+      }
+      this.weight = weight;
+    }
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(BookSearchCache.class);
+
+  private final long maxWeight;
+
+  private final int maxEntries;
+
+  private final long ttlNanos;
+
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long weight = 0;
+
+  // increased on every write, a result read before a write is not cached
+  private long generation = 0;
+
+  // tells the instances apart, their generations are not related
+  private final String instance = UUID.randomUUID().toString();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public BookSearchCache(
+      MeterRegistry registry,
+      @Value("${book.cache.search.max-entries:1000}") int maxEntries,
+      @Value("${book.cache.search.max-weight:16777216}") long maxWeight,
+      @Value("${book.cache.search.ttl:60s}") Duration ttl) {
+
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.ttlNanos = ttl.toNanos();
+
+    FunctionCounter.builder("book.search.cache.hits", hits, AtomicLong::get)
+        .description("book search results served from cache")
+        .register(registry);
+    FunctionCounter.builder("book.search.cache.misses", misses, AtomicLong::get)
+        .description("book searches that went to database")
+        .register(registry);
+    FunctionCounter.builder("book.search.cache.evictions", evictions, AtomicLong::get)
+        .description("book search results evicted to stay in bounds or expired")
+        .register(registry);
+    FunctionCounter.builder("book.search.cache.invalidations", invalidations, AtomicLong::get)
+        .description("book search results dropped by a book write")
+        .register(registry);
+    Gauge.builder("book.search.cache.entries", this, BookSearchCache::size)
+        .register(registry);
+    Gauge.builder("book.search.cache.weight", this, BookSearchCache::weight)
+        .baseUnit("bytes")
+        .register(registry);
+  }
+
+  /**
+   * Build the key of a search request.
+   *
+   * @param searchDto a search dto
+   * @return Key a normalized key
+   * @throws NullPointerException when the given search dto is null
+   */
+  public Key keyOf(SearchDto searchDto) {
+    Objects.requireNonNull(searchDto, "the input search dto must not be null");
+    return new Key(searchDto);
+  }
+
+  /**
+   * Get the current generation, to be given back to put.
+   *
+   * @return long the generation
+   */
+  public synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * Get the id of this instance, a generation only means something here.
+   *
+   * @return String the id of the instance
+   */
+  public String instance() {
+    return instance;
+  }
+
+  /**
+   * Get a cached search result.
+   *
+   * @param key a key
+   * @return PaginationDto the cached result, null when it is not cached
+   *         or expired
+   */
+  public synchronized PaginationDto<BookSummaryDto> get(Key key) {
+    Entry entry = entries.get(key);
+    if (entry != null && System.nanoTime() - entry.expiresAt >= 0) {
+      entries.remove(key);
+      weight -= entry.weight;
+      evictions.incrementAndGet();
+      entry = null;
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.data;
+  }
+
+  /**
+   * Cache a search result.
+   * Nothing is cached when a book was written since the generation
+   * was taken, because the result may already be stale.
+   *
+   * @param key        a key
+   * @param generation the generation taken before searching
+   * @param data       the search result
+   */
+  public synchronized void put(Key key, long generation, PaginationDto<BookSummaryDto> data) {
+    if (generation != this.generation) {
+      logger.debug("skip caching a search result older than the last write");
+      return;
+    }
+
+    Entry entry = new Entry(data, System.nanoTime() + ttlNanos);
+    if (entry.weight > maxWeight) {
+      return;
+    }
+
+    Entry old = entries.put(key, entry);
+    if (old != null) {
+      weight -= old.weight;
+    }
+    weight += entry.weight;
+
+    // evict the least recently used entries
+    Iterator<Entry> iterator = entries.values().iterator();
+    while ((entries.size() > maxEntries || weight > maxWeight) && iterator.hasNext()) {
+      Entry eldest = iterator.next();
+      iterator.remove();
+      weight -= eldest.weight;
+      evictions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Drop the results that a written book could appear in.
+   *
+   * @param id     an id of the written book
+   * @param before the book before the write, null when it is just created
+   * @param after  the book after the write
+   */
+  public synchronized void invalidate(int id, Book before, Book after) {
+    generation++;
+
+    // the words of the book are taken once, not per entry
+    List<String> wordsBefore = wordsOf(before);
+    List<String> wordsAfter = wordsOf(after);
+
+    int count = 0;
+    Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Key, Entry> entry = iterator.next();
+      // a fuzzy result can have any book, it is not worth checking
+      if (entry.getKey().fuzzy ||
+          entry.getValue().ids.contains(id) ||
+          matches(wordsBefore, entry.getKey().terms) ||
+          matches(wordsAfter, entry.getKey().terms)) {
+        iterator.remove();
+        weight -= entry.getValue().weight;
+        count++;
+      }
+    }
+    invalidations.addAndGet(count);
+
+    logger.debug("book id = {} was written, dropped {} cached searches", id, count);
+  }
+
+  /**
+   * Drop every result, used when too many books are written at once.
+   */
+  public synchronized void invalidateAll() {
+    generation++;
+    invalidations.addAndGet(entries.size());
+    entries.clear();
+    weight = 0;
+
+    logger.debug("dropped all cached searches");
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long weight() {
+    return weight;
+  }
+
+  /**
+   * Get the words of a book, null when there is no book.
+   */
+  private static List<String> wordsOf(Book book) {
+    if (book == null) {
+      return null;
+    }
+    List<String> words = new ArrayList<>();
+    words.addAll(BookIndex.tokenize(book.getCategory()));
+    words.addAll(BookIndex.tokenize(book.getTitle()));
+    words.addAll(BookIndex.tokenize(book.getAuthor()));
+    words.addAll(BookIndex.tokenize(book.getDescription()));
+    return words;
+  }
+
+  /**
+   * Same as the index and the book specification, every term of the
+   * keyword starts a word of the book.
+   */
+  private static boolean matches(List<String> words, List<String> terms) {
+    if (words == null) {
+      return false;
+    }
+    // no term matches every book, like an empty keyword
+    for (String term : terms) {
+      if (words.stream().noneMatch(word -> word.startsWith(term))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Roughly estimate the bytes held by a book summary.
+   */
+  private static long weightOf(BookSummaryDto book) {
+    long weight = 80;
+    for (String value : new String[] { book.getCode(), book.getTitle(),
+        book.getAuthor(), book.getCategory(), book.getStatus() }) {
+      if (value != null) {
+        weight += 40 + value.length();
+      }
+    }
+    return weight;
+  }
+}
@@ -5,10 +5,20 @@
  */
 package myapp.book.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.time.Duration;
+import java.util.Locale;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -17,17 +27,36 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import myapp.book.caches.BookSearchCache;
 import myapp.book.dto.ApiResponseDto;
 import myapp.book.dto.DataApiResponseDto;
+import myapp.book.dto.FilterDto;
 import myapp.book.dto.PaginationDto;
 import myapp.book.dto.SearchDto;
+import myapp.book.dto.book.BookBatchItemDto;
+import myapp.book.dto.book.BookBatchRequestDto;
+import myapp.book.dto.book.BookSuggestionDto;
+import myapp.book.dto.book.BookSummaryDto;
 import myapp.book.dto.book.BookCreateRequestDto;
+import myapp.book.dto.book.BookImportResultDto;
 import myapp.book.dto.book.BookUpdateRequestDto;
+import myapp.book.dto.book.BookVersionDto;
 import myapp.book.entities.Book;
+import myapp.book.exceptions.ValidationException;
+import myapp.book.services.BookExportService;
+import myapp.book.services.BookImportService;
 import myapp.book.services.BookService;
 import myapp.book.utils.AttributeUtil;
+import myapp.book.utils.ETagUtil;
+import myapp.book.utils.FormatEnum;
 import myapp.book.utils.StatusEnum;
 
 @RestController
@@ -36,28 +65,59 @@ public class BookController {
 
   private final Logger logger = LoggerFactory.getLogger(BookController.class);
 
+  public static final String TEXT_CSV_VALUE = "text/csv";
+
   @Autowired
   private BookService bookService;
 
+  @Autowired
+  private BookImportService bookImportService;
+
+  @Autowired
+  private BookExportService bookExportService;
+
+  @Autowired
+  private BookSearchCache searchCache;
+
+  @Value("${book.export.timeout:1h}")
+  private Duration exportTimeout;
+
 
   /**
    * Search for books
    *
    * @param searchDto a search dto
-   * @return DataApiResponseDto a list of books.
+   * @param request   the request, to check If-None-Match
+   * @return DataApiResponseDto a list of books, nothing when not modified
    */
   @GetMapping(value = "")
-  public ResponseEntity<DataApiResponseDto<PaginationDto<Book>>> search(
-    final SearchDto searchDto
+  public ResponseEntity<DataApiResponseDto<PaginationDto<BookSummaryDto>>> search(
+    final @Validated SearchDto searchDto,
+    final WebRequest request
   ) {
 
     logger.debug("search request dto = {}", searchDto);
 
+    // a page is known by the request and the writes seen so far,
+    // so the client that already has it gets a 304 without searching
+    boolean byCursor = searchDto.getCursor() != null;
+    if (!byCursor && request.checkNotModified(ETagUtil.of(searchCache.instance(),
+        searchCache.generation(), searchCache.keyOf(searchDto)))) {
+      logger.debug("search result is not modified");
+      return null;
+    }
+
     // search
-    PaginationDto<Book> data = bookService.search(searchDto);
+    PaginationDto<BookSummaryDto> data = bookService.search(searchDto);
+
+    // a cursor page is not cached, its ETag is its content
+    if (byCursor && request.checkNotModified(ETagUtil.of(data))) {
+      logger.debug("search result is not modified");
+      return null;
+    }
 
     // build response
-    DataApiResponseDto<PaginationDto<Book>> response = new DataApiResponseDto<>(
+    DataApiResponseDto<PaginationDto<BookSummaryDto>> response = new DataApiResponseDto<>(
       StatusEnum.STATUS_SUCCESS.getValue(),
       "the search is done successfully",
       MDC.get(AttributeUtil.REQUEST_ID),
@@ -69,6 +129,157 @@ public class BookController {
     return ResponseEntity.ok(response);
   }
 
+  /**
+   * Filter books by exact values
+   *
+   * @param filterDto a filter dto
+   * @return DataApiResponseDto a list of books, the newest first
+   */
+  @GetMapping(value = "filter")
+  public ResponseEntity<DataApiResponseDto<PaginationDto<BookSummaryDto>>> filter(
+    final @Validated FilterDto filterDto
+  ) {
+
+    logger.debug("filter request dto = {}", filterDto);
+
+    PaginationDto<BookSummaryDto> data = bookService.filter(filterDto);
+
+    // build response
+    DataApiResponseDto<PaginationDto<BookSummaryDto>> response = new DataApiResponseDto<>(
+      StatusEnum.STATUS_SUCCESS.getValue(),
+      "the filter is done successfully",
+      MDC.get(AttributeUtil.REQUEST_ID),
+      data
+    );
+
+    logger.debug("filter result dto = {}", response);
+
+    return ResponseEntity.ok(response);
+  }
+
+  /**
+   * Suggest titles and authors for the autocomplete
+   *
+   * @param prefix the text typed so far
+   * @param size   the maximum number of suggestions
+   * @return DataApiResponseDto the suggestions, the most popular first
+   */
+  @GetMapping(value = "suggest")
+  public ResponseEntity<DataApiResponseDto<List<BookSuggestionDto>>> suggest(
+    final @RequestParam String prefix,
+    final @RequestParam(defaultValue = "10") int size
+  ) {
+
+    logger.debug("request to suggest for prefix = {}", prefix);
+
+    List<BookSuggestionDto> data = bookService.suggest(prefix, size);
+
+    // build response
+    DataApiResponseDto<List<BookSuggestionDto>> response = new DataApiResponseDto<>(
+      StatusEnum.STATUS_SUCCESS.getValue(),
+      String.format("%d suggestions are found", data.size()),
+      MDC.get(AttributeUtil.REQUEST_ID),
+      data
+    );
+
+    logger.debug("suggest response dto = {}", response);
+
+    return ResponseEntity.ok(response);
+  }
+
+  /**
+   * Export the whole catalog, streamed as it is read
+   *
+   * @param format   either ndjson or csv
+   * @param request  the request, to give the export its own timeout
+   * @param response the response
+   * @return StreamingResponseBody the books
+   */
+  @GetMapping(value = "export")
+  public ResponseEntity<StreamingResponseBody> export(
+    final @RequestParam(defaultValue = "ndjson") String format,
+    final HttpServletRequest request,
+    final HttpServletResponse response
+  ) {
+
+    logger.debug("request to export books as {}", format);
+
+    FormatEnum formatEnum;
+    try {
+      formatEnum = FormatEnum.valueOf(format.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new ValidationException(
+        String.format("format = %s must be one of ndjson, csv", format));
+    }
+
+    MediaType contentType = formatEnum == FormatEnum.CSV
+      ? MediaType.parseMediaType(TEXT_CSV_VALUE)
+      : MediaType.APPLICATION_NDJSON;
+
+    // the other async requests keep the default timeout, only the export
+    // streams for longer
+    AsyncWebRequest asyncRequest = WebAsyncUtils.createAsyncWebRequest(request, response);
+    asyncRequest.setTimeout(exportTimeout.toMillis());
+    WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(asyncRequest);
+
+    StreamingResponseBody body = output -> bookExportService.export(output, formatEnum);
+
+    return ResponseEntity.ok()
+      .contentType(contentType)
+      .header(HttpHeaders.CONTENT_DISPOSITION, String.format(
+        "attachment; filename=\"books.%s\"", formatEnum.name().toLowerCase(Locale.ROOT)))
+      .body(body);
+  }
+
+  /**
+   * Fetch many books at once
+   *
+   * @param ids the ids of the books, separated by comma
+   * @return DataApiResponseDto one item per id in the same order
+   */
+  @GetMapping(value = "batch")
+  public ResponseEntity<DataApiResponseDto<List<BookBatchItemDto>>> batch(
+    final @RequestParam List<Integer> ids
+  ) {
+
+    logger.debug("request to fetch books ids = {}", ids);
+
+    return batchResponse(bookService.detail(ids));
+  }
+
+  /**
+   * Fetch many books at once, for the id lists too long for a url
+   *
+   * @param requestDto a batch request dto
+   * @return DataApiResponseDto one item per id in the same order
+   */
+  @PostMapping(value = "batch")
+  public ResponseEntity<DataApiResponseDto<List<BookBatchItemDto>>> batch(
+    final @Validated @RequestBody BookBatchRequestDto requestDto
+  ) {
+
+    logger.debug("batch request dto = {}", requestDto);
+
+    return batchResponse(bookService.detail(requestDto.getIds()));
+  }
+
+  private ResponseEntity<DataApiResponseDto<List<BookBatchItemDto>>> batchResponse(
+    final List<BookBatchItemDto> items
+  ) {
+
+    // build the response
+    DataApiResponseDto<List<BookBatchItemDto>> response = new DataApiResponseDto<>(
+      StatusEnum.STATUS_SUCCESS.getValue(),
+      String.format("%d books are fetched", items.size()),
+      MDC.get(AttributeUtil.REQUEST_ID),
+      items
+    );
+
+    logger.debug("batch fetch response dto = {}", response);
+
+    return ResponseEntity.ok(response);
+  }
+
   /**
    * Create a book
    *
@@ -104,6 +315,41 @@ public class BookController {
     return ResponseEntity.ok(response);
   }
 
+  /**
+   * Import many books at once
+   *
+   * @param contentType either application/x-ndjson or text/csv
+   * @param body        the records, read as a stream
+   * @return DataApiResponseDto the counts and the errors per line
+   * @throws IOException when the body can not be read
+   */
+  @PostMapping(value = "import",
+    consumes = { MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE })
+  public ResponseEntity<DataApiResponseDto<BookImportResultDto>> importBooks(
+    final @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+    final InputStream body
+  ) throws IOException {
+
+    logger.debug("request to import books as {}", contentType);
+
+    FormatEnum format = MediaType.parseMediaType(contentType)
+        .isCompatibleWith(MediaType.APPLICATION_NDJSON) ? FormatEnum.NDJSON : FormatEnum.CSV;
+
+    BookImportResultDto data = bookImportService.importBooks(body, format);
+
+    // build the response
+    DataApiResponseDto<BookImportResultDto> response = new DataApiResponseDto<>(
+      StatusEnum.STATUS_SUCCESS.getValue(),
+      String.format("%d of %d books were imported", data.getImported(), data.getTotal()),
+      MDC.get(AttributeUtil.REQUEST_ID),
+      data
+    );
+
+    logger.debug("book import response dto = {}", response);
+
+    return ResponseEntity.ok(response);
+  }
+
   /**
    * Update the resource
    *
@@ -144,19 +390,38 @@ public class BookController {
   /**
    * Fetch the book detail
    *
-   * @param id an id of the book
-   * @return DataApiResponseDto
+   * @param id      an id of the book
+   * @param request the request, to check If-None-Match and If-Modified-Since
+   * @return DataApiResponseDto, nothing when not modified
    */
   @GetMapping(value = "{id}")
   public ResponseEntity<DataApiResponseDto<Book>> detail(
-    final @PathVariable int id
+    final @PathVariable int id,
+    final WebRequest request
   ) {
 
     logger.debug("request to fetch detail of book id = {}", id);
 
+    // the client may already have this version, 304 without loading the book
+    if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null ||
+        request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+      BookVersionDto version = bookService.version(id);
+      if (request.checkNotModified(ETagUtil.of(version),
+          version.getUpdatedAt().toEpochMilli())) {
+        logger.debug("book id = {} is not modified", id);
+        return null;
+      }
+    }
+
     // fetch the detail
     Book book = bookService.detail(id);
 
+    // the ETag and Last-Modified of the loaded book, no other query
+    if (request.checkNotModified(ETagUtil.of(book), book.getUpdatedAt().toEpochMilli())) {
+      logger.debug("book id = {} is not modified", id);
+      return null;
+    }
+
     // build the response
     DataApiResponseDto<Book> response = new DataApiResponseDto<Book>(
       StatusEnum.STATUS_SUCCESS.getValue(),
@@ -0,0 +1,89 @@
+/**
+ * This is the data source configuration.
+ * The connection is only taken at the first statement, once the
+ * transaction is known to be read-only or not, so a transaction that
+ * is served from memory never takes a connection. When the replicas are
+ * enabled, the read-only transactions are routed to them. Every pool
+ * takes the spring.datasource.hikari settings, and the replicas take
+ * book.datasource.replica.hikari over them.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.datasources;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import com.zaxxer.hikari.HikariDataSource;
+
+@Configuration
+@EnableScheduling
+public class DataSourceConfig {
+
+  @Value("${book.datasource.replica.enabled:false}")
+  private boolean replicaEnabled;
+
+  @Value("${book.datasource.replica.urls:}")
+  private List<String> replicaUrls;
+
+  @Value("${book.datasource.replica.read-your-writes:5s}")
+  private Duration readYourWrites;
+
+  private ReplicaRoutingDataSource routingDataSource;
+
+  @Bean
+  public DataSource dataSource(DataSourceProperties properties, Environment environment) {
+
+    Binder binder = Binder.get(environment);
+
+    HikariDataSource primary = properties.initializeDataSourceBuilder()
+        .type(HikariDataSource.class)
+        .build();
+    binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+    primary.setPoolName("primary");
+
+    if (!replicaEnabled || replicaUrls.isEmpty()) {
+      return new LazyConnectionDataSourceProxy(primary);
+    }
+
+    Map<String, DataSource> replicas = new LinkedHashMap<>();
+    for (int i = 0; i < replicaUrls.size(); i++) {
+      HikariDataSource replica = properties.initializeDataSourceBuilder()
+          .type(HikariDataSource.class)
+          .url(replicaUrls.get(i))
+          .build();
+      binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+      binder.bind("book.datasource.replica.hikari", Bindable.ofInstance(replica));
+      replica.setPoolName("replica-" + i);
+      replica.setReadOnly(true);
+      replicas.put(replicaUrls.get(i), replica);
+    }
+
+    // a health check waits no longer than a connection
+    Duration validationTimeout = Duration.ofMillis(
+        ((HikariDataSource) replicas.values().iterator().next()).getConnectionTimeout());
+    routingDataSource = new ReplicaRoutingDataSource(primary, replicas,
+        readYourWrites, validationTimeout);
+
+    return new LazyConnectionDataSourceProxy(routingDataSource);
+  }
+
+  @Scheduled(fixedDelayString = "${book.datasource.replica.health-check-interval-ms:5000}")
+  public void checkReplicas() {
+    if (routingDataSource != null) {
+      routingDataSource.checkReplicas();
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * This is the startup check of the id sequences.
+ * The entities take their ids by block of the allocation size, and the
+ * block starts at the sequence value, so a sequence incremented by less
+ * than the allocation size would give the same ids twice.
+ * The start fails instead, when a migration and the allocation size
+ * were not changed together.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.datasources;
+
+import static myapp.book.entities.PooledSequenceGenerator.ALLOCATION_SIZE;
+
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import myapp.book.entities.PooledSequenceGenerator;
+
+@Component
+public class IdSequenceCheck {
+
+  private static final List<String> TABLES = List.of("user", "role", "user_profile", "book");
+
+  private static final String SELECT_INCREMENTS =
+      "SELECT sequencename, increment_by FROM pg_sequences " +
+      "WHERE schemaname = 'public' AND sequencename IN (:names)";
+
+  @Autowired
+  private NamedParameterJdbcTemplate jdbcTemplate;
+
+  private final Logger logger = LoggerFactory.getLogger(IdSequenceCheck.class);
+
+  @PostConstruct
+  public void check() {
+    List<String> names = TABLES.stream().map(PooledSequenceGenerator::sequenceOf).toList();
+
+    List<Map<String, Object>> rows = jdbcTemplate.queryForList(SELECT_INCREMENTS,
+        new MapSqlParameterSource("names", names));
+
+    for (Map<String, Object> row : rows) {
+      long increment = ((Number) row.get("increment_by")).longValue();
+      if (increment != ALLOCATION_SIZE) {
+        throw new IllegalStateException(String.format(
+            "sequence = %s is incremented by %d but the id allocation size is %d, " +
+            "the migrations and PooledSequenceGenerator.ALLOCATION_SIZE must agree",
+            row.get("sequencename"), increment, ALLOCATION_SIZE));
+      }
+    }
+
+    logger.info("id sequences = {} are incremented by the allocation size = {}",
+        names, ALLOCATION_SIZE);
+  }
+}
@@ -0,0 +1,246 @@
+/**
+ * This is the data source that sends the read-only transactions to the
+ * read replicas and everything else to the primary.
+ * The replicas are picked in turn among the healthy ones, a replica that
+ * fails to give a connection is marked down until the next health check
+ * finds it back, and the primary is used when no replica is healthy.
+ * A user who just wrote keeps reading from the primary for a short
+ * while, so that user does not miss a write the replicas have not got yet.
+ * The time is remembered by this instance and sent to the client in a
+ * cookie, so the next request of that client reads from the primary
+ * whichever instance it reaches. A client that does not keep cookies
+ * only gets it from the instance it wrote to.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.datasources;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+  // users remembered before the expired ones are purged
+  private static final int MAX_WRITERS = 10000;
+
+  // epoch millis until which the client reads from the primary
+  static final String COOKIE = "book-read-primary-until";
+
+  /**
+   * This is one read replica and its health.
+   */
+  private static class Replica {
+    private final String name;
+    private final DataSource dataSource;
+    private volatile boolean healthy = true;
+
+    private Replica(String name, DataSource dataSource) {
+      this.name = name;
+      this.dataSource = dataSource;
+    }
+  }
+
+  @FunctionalInterface
+  private interface ConnectionSupplier {
+    Connection get(DataSource dataSource) throws SQLException;
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+  private final DataSource primary;
+
+  private final List<Replica> replicas = new ArrayList<>();
+
+  private final long readYourWritesNanos;
+
+  private final long readYourWritesMillis;
+
+  private final int validationTimeout;
+
+  private final AtomicInteger next = new AtomicInteger();
+
+  // username -> time until which that user reads from the primary
+  private final Map<String, Long> writers = new ConcurrentHashMap<>();
+
+  public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+      Duration readYourWrites, Duration validationTimeout) {
+    this.primary = primary;
+    replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+    this.readYourWritesNanos = readYourWrites.toNanos();
+    this.readYourWritesMillis = readYourWrites.toMillis();
+    this.validationTimeout = (int) Math.max(1, validationTimeout.toSeconds());
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return getConnection(DataSource::getConnection);
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return getConnection(dataSource -> dataSource.getConnection(username, password));
+  }
+
+  /**
+   * Get a connection from the routed data source, or from the primary
+   * when the replica fails to give one.
+   */
+  private Connection getConnection(ConnectionSupplier supplier) throws SQLException {
+    Replica replica = route();
+    if (replica == null) {
+      return supplier.get(primary);
+    }
+    try {
+      return supplier.get(replica.dataSource);
+    } catch (SQLException e) {
+      replica.healthy = false;
+      logger.warn("replica = {} is down, read from the primary: {}",
+          replica.name, e.getMessage());
+      return supplier.get(primary);
+    }
+  }
+
+  /**
+   * Check every replica and bring back the ones that answer again.
+   */
+  public void checkReplicas() {
+    for (Replica replica : replicas) {
+      boolean healthy;
+      try (Connection connection = replica.dataSource.getConnection()) {
+        healthy = connection.isValid(validationTimeout);
+      } catch (SQLException e) {
+        healthy = false;
+      }
+      if (healthy != replica.healthy) {
+        logger.info("replica = {} is {}", replica.name, healthy ? "up" : "down");
+      }
+      replica.healthy = healthy;
+    }
+  }
+
+  /**
+   * Pick a replica for the current transaction.
+   *
+   * @return Replica a healthy replica, null to use the primary
+   */
+  private Replica route() {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      return null;
+    }
+
+    String username = currentUsername();
+
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      rememberWriter(username);
+      return null;
+    }
+
+    if (recentlyWrote(username) || recentlyWroteElsewhere()) {
+      return null;
+    }
+
+    int size = replicas.size();
+    int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+    for (int i = 0; i < size; i++) {
+      Replica replica = replicas.get((start + i) % size);
+      if (replica.healthy) {
+        return replica;
+      }
+    }
+    return null;
+  }
+
+  private void rememberWriter(String username) {
+    if (readYourWritesNanos <= 0) {
+      return;
+    }
+    sendCookie();
+    if (username == null) {
+      return;
+    }
+    long now = System.nanoTime();
+    if (writers.size() >= MAX_WRITERS) {
+      writers.values().removeIf(until -> until - now < 0);
+    }
+    writers.put(username, now + readYourWritesNanos);
+  }
+
+  private boolean recentlyWrote(String username) {
+    if (username == null) {
+      return false;
+    }
+    Long until = writers.get(username);
+    return until != null && until - System.nanoTime() > 0;
+  }
+
+  /**
+   * Tell the client to read from the primary for a while, on any instance.
+   * The cookie is only added while the response is not sent yet, a write
+   * is always done before the response body.
+   */
+  private void sendCookie() {
+    ServletRequestAttributes attributes = currentRequest();
+    HttpServletResponse response = attributes == null ? null : attributes.getResponse();
+    if (response == null || response.isCommitted()) {
+      return;
+    }
+    Cookie cookie = new Cookie(COOKIE,
+        String.valueOf(System.currentTimeMillis() + readYourWritesMillis));
+    cookie.setPath("/");
+    cookie.setHttpOnly(true);
+    cookie.setMaxAge((int) Math.max(1, (readYourWritesMillis + 999) / 1000));
+    response.addCookie(cookie);
+  }
+
+  /**
+   * Whether the client wrote recently, maybe through another instance.
+   * The clocks of the instances are expected to be in sync.
+   */
+  private boolean recentlyWroteElsewhere() {
+    ServletRequestAttributes attributes = currentRequest();
+    HttpServletRequest request = attributes == null ? null : attributes.getRequest();
+    if (request == null || request.getCookies() == null) {
+      return false;
+    }
+    for (Cookie cookie : request.getCookies()) {
+      if (COOKIE.equals(cookie.getName())) {
+        try {
+          return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static ServletRequestAttributes currentRequest() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    return attributes instanceof ServletRequestAttributes ?
+        (ServletRequestAttributes) attributes : null;
+  }
+
+  private static String currentUsername() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    return authentication == null ? null : authentication.getName();
+  }
+}
@@ -1,28 +1,41 @@
+/**
+ * This is the structured filter request dto.
+ * Every given column must be equal to its value, a column not given
+ * is not filtered.
+ *
+ * @author Phann Malinka
+ */
 package myapp.book.dto;
 
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
-import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Size;
 import lombok.Data;
+import myapp.book.entities.Book.STATUS;
+import myapp.book.utils.CategoryEnum;
 import myapp.book.utils.ValidationUtil;
+import myapp.book.validators.ValueOfEnum;
 
 @Data
 public class FilterDto {
 
-    @NotEmpty(message = "column is requied")
-    @Size(max = ValidationUtil.MAX_LEN_COLUMN, message = "the column = {validatedValue} must be shorter than {max} characters long")
-    String column;
+    @Size(max = ValidationUtil.MAX_LEN_BOOK_CODE, message = "the code = {validatedValue} must be shorter than {max} characters long")
+    String code;
 
-    @NotEmpty(message = "value is requied")
-    @Size(max = ValidationUtil.MAX_LEN_COLUMN, message = "the value = {validatedValue} must be shorter than {max} characters long")
-    String value;
+    @ValueOfEnum(enumClass = CategoryEnum.class, message = "the category = {validatedValue} must be one of NOVEL, STUDY, COMIC")
+    String category;
+
+    @ValueOfEnum(enumClass = STATUS.class, message = "the status = {validatedValue} must be one of GOOD, OLD, DELETED")
+    String status;
+
+    @Size(max = ValidationUtil.MAX_LEN_BOOK_AUTHOR, message = "the author = {validatedValue} must be shorter than {max} characters long")
+    String author;
 
     @Min(value = 1, message = "the page = {validatedValue} must be greater than or equal to {value}")
-    @Max(value = 100, message = "the page = {validatedValue} must be less than or equal to {value}")
+    @Max(value = ValidationUtil.MAX_PAGE, message = "the page = {validatedValue} must be less than or equal to {value}")
     int page = 1;
 
     @Min(value = 1, message = "the size = {validatedValue} must be greater than {value}")
-    @Max(value = 10, message = "the size = {validatedValue} must be less than or equal to {value}")
+    @Max(value = ValidationUtil.MAX_PAGE_SIZE, message = "the size = {validatedValue} must be less than or equal to {value}")
     int size = 10;
 }
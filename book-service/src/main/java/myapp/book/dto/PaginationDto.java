@@ -6,6 +6,7 @@
 package myapp.book.dto;
 
 import java.util.List;
+import java.util.Map;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -21,4 +22,20 @@ public class PaginationDto<T> {
 
     @ToString.Exclude
     List<T> list;
+
+    // the cursor of the next page in cursor mode, null when there is no more
+    String nextCursor;
+
+    // facet -> value -> number of matches, null when it is not counted
+    Map<String, Map<String, Integer>> facets;
+
+    public PaginationDto(int page, int size, int totalPage, long totalSize,
+        List<T> list) {
+        this(page, size, totalPage, totalSize, list, null, null);
+    }
+
+    public PaginationDto(int page, int size, int totalPage, long totalSize,
+        List<T> list, String nextCursor) {
+        this(page, size, totalPage, totalSize, list, nextCursor, null);
+    }
 }
\ No newline at end of file
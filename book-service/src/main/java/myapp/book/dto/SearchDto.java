@@ -28,15 +28,28 @@ public class SearchDto {
     String search = "";
 
     @Min(value = 1, message = "the page = '${validatedValue}' must be greater than or equal to {value}")
-    @Max(value = 100, message = "the page = '${validatedValue}' must be less than or equal to {value}")
+    @Max(value = ValidationUtil.MAX_PAGE, message = "the page = '${validatedValue}' must be less than or equal to {value}")
     int page = PaginationUtil.DEFAULT_PAGE_NUMBER;
 
     @Min(value = 1, message = "the size = '${validatedValue}' must be greater than {value}")
-    @Max(value = 10, message = "the size = '${validatedValue}' must be less than or equal to {value}")
+    @Max(value = ValidationUtil.MAX_PAGE_SIZE, message = "the size = '${validatedValue}' must be less than or equal to {value}")
     int size = PaginationUtil.DEFAULT_PAGE_SIZE;
     @Size(max = ValidationUtil.MAX_LEN_SORT, message = "the sort = '${validatedValue}' must not be longer than {max} characters")
     String sort = "id";
 
     @Enumerated(EnumType.STRING)
     ORDER order = ORDER.desc;
+
+    // null for page mode, empty for the first page of cursor mode
+    @Size(max = ValidationUtil.MAX_LEN_CURSOR, message = "the cursor must not be longer than {max} characters")
+    String cursor;
+
+    // count the total in cursor mode, page mode always counts
+    boolean count = false;
+
+    // accept a few typos in the title and author terms
+    boolean fuzzy = false;
+
+    // also search the deleted books, only the live ones by default
+    boolean includeDeleted = false;
 }
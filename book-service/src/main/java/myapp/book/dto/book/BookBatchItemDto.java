@@ -0,0 +1,29 @@
+/**
+ * This is one item of the batch fetch response.
+ * Each requested id has its own status, so a missing book
+ * does not fail the whole batch.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.dto.book;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import myapp.book.entities.Book;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBatchItemDto {
+  private int id;
+  private int status;
+  private String message;
+
+  @ToString.Exclude
+  private Book data;
+}
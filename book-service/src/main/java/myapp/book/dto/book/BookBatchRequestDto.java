@@ -0,0 +1,23 @@
+/**
+ * This is the request dto to fetch many books at once.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.dto.book;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import lombok.Data;
+import myapp.book.utils.ValidationUtil;
+
+@Data
+public class BookBatchRequestDto {
+
+  @NotEmpty(message = "ids is required")
+  @Size(max = ValidationUtil.MAX_BATCH_SIZE,
+    message = "at most {max} ids can be fetched at once")
+  List<@NotNull(message = "id must not be null") Integer> ids = new ArrayList<>();
+}
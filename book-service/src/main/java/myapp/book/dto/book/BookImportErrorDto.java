@@ -0,0 +1,23 @@
+/**
+ * This is one row that could not be imported.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.dto.book;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportErrorDto {
+  private long line;
+  private String code;
+  private String message;
+}
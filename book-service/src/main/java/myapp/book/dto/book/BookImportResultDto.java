@@ -0,0 +1,27 @@
+/**
+ * This is the result of a book import.
+ * Only the first errors are listed, all of them are counted.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.dto.book;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class BookImportResultDto {
+  private long total;
+  private long imported;
+  private long failed;
+
+  @ToString.Exclude
+  private List<BookImportErrorDto> errors = new ArrayList<>();
+}
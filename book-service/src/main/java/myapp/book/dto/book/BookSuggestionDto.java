@@ -0,0 +1,22 @@
+/**
+ * This is one completion of the autocomplete, a title or an author.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.dto.book;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSuggestionDto {
+  private String text;
+  private int popularity;
+}
@@ -0,0 +1,27 @@
+/**
+ * This is the light view of a book used in the lists.
+ * It has no description, so a search does not load that text column.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.dto.book;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSummaryDto {
+  private Integer id;
+  private String code;
+  private String title;
+  private String author;
+  private String category;
+  private String status;
+}
@@ -0,0 +1,21 @@
+/**
+ * This is the version of a book, enough to tell if a client copy is
+ * still up to date without loading the book.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.dto.book;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class BookVersionDto {
+    private Integer id;
+    private Integer version;
+    private Instant updatedAt;
+}
@@ -5,10 +5,15 @@
  */
 package myapp.book.entities;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import javax.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Formula;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -21,6 +26,8 @@ import myapp.book.validators.ValueOfEnum;
 @ToString
 @NoArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
 @Table(name = "book", schema = "public")
 public class Book extends BaseEntity {
 
@@ -50,6 +57,25 @@ public class Book extends BaseEntity {
     @Column(name = "description")
     String description;
 
+    // increased on every update, the ETag of the book
+    @JsonIgnore
+    @Version
+    @Column(name = "version", nullable = false)
+    Integer version;
+
+    @JsonIgnore
+    @Column(name = "updated_at", nullable = false)
+    Instant updatedAt;
+
+    // the condition of the partial indexes on the live books, written as
+    // a literal so a generic plan can still use them. Only for queries,
+    // it is not refreshed when the status is changed in memory.
+    @JsonIgnore
+    @ToString.Exclude
+    @Setter(AccessLevel.NONE)
+    @Formula("(status <> 'DELETED')")
+    Boolean live;
+
     @JsonIgnore
     @ToString.Exclude
     @ManyToMany(mappedBy = "books")
@@ -64,4 +90,10 @@ public class Book extends BaseEntity {
         this.status = status;
         this.description = description;
     }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        this.updatedAt = Instant.now();
+    }
 }
\ No newline at end of file
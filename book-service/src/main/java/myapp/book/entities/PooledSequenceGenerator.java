@@ -0,0 +1,53 @@
+/**
+ * This is the id generator of the entities.
+ * The ids are taken from the sequence of the table, a block of
+ * allocation size ids per call, so an insert does not need a round trip
+ * for its id and the inserts of a flush can be sent as one JDBC batch.
+ * The sequence value is the first id of the block, so the sequence must
+ * be incremented by the allocation size, and a row inserted with the
+ * column default simply takes a whole block.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.entities;
+
+import java.util.Properties;
+import org.hibernate.MappingException;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+  public static final String NAME = "pooled-sequence";
+
+  public static final String STRATEGY = "myapp.book.entities.PooledSequenceGenerator";
+
+  // the increment of the sequences set by V0008, not a setting, a new
+  // migration has to alter the sequences to change it
+  public static final int ALLOCATION_SIZE = 50;
+
+  /**
+   * Get the name of the sequence of a table, the one of its serial id.
+   *
+   * @param table a table
+   * @return String the sequence name
+   */
+  public static String sequenceOf(String table) {
+    return table.replace("\"", "") + "_id_seq";
+  }
+
+  @Override
+  public void configure(Type type, Properties params, ServiceRegistry serviceRegistry)
+      throws MappingException {
+
+    params.setProperty(SEQUENCE_PARAM,
+        sequenceOf(params.getProperty(PersistentIdentifierGenerator.TABLE)));
+    params.setProperty(INCREMENT_PARAM, String.valueOf(ALLOCATION_SIZE));
+    params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+
+    super.configure(type, params, serviceRegistry);
+  }
+}
@@ -0,0 +1,761 @@
+/**
+ * This is the in-memory inverted index of the books.
+ * The title, author, category and description are split into terms,
+ * and every term points to the ids of the books having it.
+ * A keyword search then only touches the books that match instead of
+ * scanning the whole book table with LIKE.
+ * The title and author terms are also indexed by trigrams for the
+ * fuzzy search, which accepts a few typos in every term.
+ * The whole titles and authors of the books not deleted are kept in a
+ * suggestion tree for the autocomplete.
+ * The term frequencies of every field are counted for the relevance
+ * sort, which scores the matches with BM25.
+ * Every category, status and author has the bitmap of its book ids, so the
+ * facet counts of a search are the intersections of those bitmaps with the
+ * hits, and an exact filter is the intersection of the filtered values.
+ * The bitmaps are compressed, an author of a few books only takes the
+ * room of those ids instead of one bit per id of the catalog.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.indexes;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToIntFunction;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import myapp.book.dto.book.BookSuggestionDto;
+import myapp.book.entities.Book;
+import myapp.book.entities.Book.STATUS;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import myapp.book.repositories.BookRepository;
+import myapp.book.utils.PaginationUtil.ORDER;
+import myapp.book.utils.ValidationUtil;
+
+@Component
+public class BookIndex {
+
+  private static final Map<String, Comparator<IndexedBook>> COMPARATORS = Map.of(
+      "id", Comparator.comparingInt(IndexedBook::getId),
+      "code", Comparator.comparing(IndexedBook::getCode,
+          Comparator.nullsFirst(Comparator.naturalOrder())),
+      "title", Comparator.comparing(IndexedBook::getTitle,
+          Comparator.nullsFirst(Comparator.naturalOrder())),
+      "author", Comparator.comparing(IndexedBook::getAuthor,
+          Comparator.nullsFirst(Comparator.naturalOrder())));
+
+  /**
+   * This is the first matches of a search.
+   */
+  @Getter
+  @AllArgsConstructor
+  public static class Hits {
+    // the number of all matches
+    private final int total;
+    // the first matches, in the order of the search
+    private final List<IndexedBook> books;
+    // the ids of all matches
+    private final RoaringBitmap ids;
+  }
+
+  private static class ScoredBook {
+    private final IndexedBook book;
+    private final double score;
+
+    private ScoredBook(IndexedBook book, double score) {
+      this.book = book;
+      this.score = score;
+    }
+  }
+
+  // the worst first, a tie goes to the newest book
+  private static final Comparator<ScoredBook> BY_SCORE = Comparator
+      .<ScoredBook>comparingDouble(scored -> scored.score)
+      .thenComparingInt(scored -> scored.book.getId());
+
+  public static final String FACET_CATEGORY = "category";
+  public static final String FACET_STATUS = "status";
+  public static final String FILTER_AUTHOR = "author";
+  public static final String FILTER_CODE = "code";
+
+  private static final List<String> FACETS = List.of(FACET_CATEGORY, FACET_STATUS);
+
+  @Autowired
+  private BookRepository bookRepo;
+
+  @Value("${book.index.batch-size:1000}")
+  private int batchSize;
+
+  @Value("${book.index.fuzzy.max-distance:2}")
+  private int maxDistance;
+
+  // title, author, category, description
+  @Value("${book.index.relevance.weights:3,2,1,1}")
+  private double[] weights;
+
+  @Value("${book.index.relevance.k1:1.2}")
+  private double k1;
+
+  @Value("${book.index.relevance.b:0.75}")
+  private double b;
+
+  private final Logger logger = LoggerFactory.getLogger(BookIndex.class);
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // term -> ids of the books having that term
+  private final NavigableMap<String, RoaringBitmap> postings = new TreeMap<>();
+
+  // id -> terms of that book, used to remove the old postings on update
+  private final Map<Integer, Set<String>> termsOfBook = new HashMap<>();
+
+  private final Map<Integer, IndexedBook> books = new HashMap<>();
+
+  // title and author terms, for the fuzzy search
+  private final TrigramIndex names = new TrigramIndex();
+
+  // id -> title and author terms of that book
+  private final Map<Integer, Set<String>> namesOfBook = new HashMap<>();
+
+  // whole titles and authors, for the autocomplete
+  private final SuggestionTree suggestions = new SuggestionTree(ValidationUtil.MAX_SUGGESTIONS);
+
+  // column -> value -> ids of the books having that value
+  private final Map<String, Map<String, RoaringBitmap>> bitmaps = Map.of(
+      FACET_CATEGORY, new TreeMap<>(),
+      FACET_STATUS, new TreeMap<>(),
+      FILTER_AUTHOR, new HashMap<>());
+
+  // code -> id, the code is unique
+  private final Map<String, Integer> codes = new HashMap<>();
+
+  // term frequencies per field, for the relevance score
+  private final FieldStatistics stats = new FieldStatistics();
+
+  private volatile boolean ready = false;
+
+  /**
+   * Split a text into lower case terms.
+   *
+   * @param text a text
+   * @return List a list of terms, empty when the text is null
+   */
+  public static List<String> tokenize(String text) {
+    List<String> terms = new ArrayList<>();
+    if (text == null) {
+      return terms;
+    }
+    for (String term : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+      if (!term.isEmpty()) {
+        terms.add(term);
+      }
+    }
+    return terms;
+  }
+
+  /**
+   * Load all books from database into the index.
+   * It is done batch by batch ordered by id so the memory of
+   * one batch is released before the next one is loaded.
+   * The books are read from the primary, a lagging replica would miss
+   * the writes made before the sync checkpoint.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void build() {
+
+    logger.info("started building the book index");
+
+    int lastId = 0;
+    int count = 0;
+    List<Book> batch;
+    do {
+      batch = bookRepo.findByIdGreaterThanOrderByIdAsc(lastId,
+          PageRequest.of(0, batchSize));
+      lock.writeLock().lock();
+      try {
+        for (Book book : batch) {
+          // a book changed while building is already up to date
+          if (!books.containsKey(book.getId())) {
+            doPut(book);
+          }
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+      if (!batch.isEmpty()) {
+        lastId = batch.get(batch.size() - 1).getId();
+        count += batch.size();
+      }
+    } while (batch.size() == batchSize);
+
+    ready = true;
+
+    logger.info("done building the book index with {} books and {} terms",
+        count, postings.size());
+  }
+
+  /**
+   * Check if the index is completely loaded.
+   *
+   * @return boolean true when the index can be used to search
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  /**
+   * Check if the index can sort by the given column.
+   * The description is not kept in memory, so it can not be sorted here.
+   *
+   * @param sort a column to sort
+   * @return boolean true when the index can sort by that column
+   */
+  public boolean canSortBy(String sort) {
+    return COMPARATORS.containsKey(sort);
+  }
+
+  /**
+   * Check if the index has a book, at that version or a later one.
+   *
+   * @param id      an id of the book
+   * @param version a version of the book, 0 for any version
+   * @return boolean true when the index has it
+   */
+  public boolean has(int id, int version) {
+    lock.readLock().lock();
+    try {
+      IndexedBook book = books.get(id);
+      return book != null && book.getVersion() >= version;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Add or replace a book in the index.
+   *
+   * @param book a book
+   * @throws NullPointerException when the given book or its id is null
+   */
+  public void put(Book book) {
+    Objects.requireNonNull(book, "the input book must not be null");
+    Objects.requireNonNull(book.getId(), "the input book id must not be null");
+
+    lock.writeLock().lock();
+    try {
+      doPut(book);
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    logger.debug("indexed book id = {}", book.getId());
+  }
+
+  /**
+   * Add or replace many books in the index at once.
+   *
+   * @param books the books
+   */
+  public void putAll(List<Book> books) {
+    lock.writeLock().lock();
+    try {
+      for (Book book : books) {
+        doPut(book);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    logger.debug("indexed {} books", books.size());
+  }
+
+  /**
+   * Remove a book from the index.
+   *
+   * @param id an id of the book
+   */
+  public void remove(int id) {
+    lock.writeLock().lock();
+    try {
+      doRemove(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    logger.debug("removed book id = {} from the index", id);
+  }
+
+  /**
+   * Search for the books having all terms of the keyword.
+   * Every term of the keyword matches any term of the book starting with it,
+   * or in fuzzy mode, any title or author term within a few typos of it.
+   * A term is not found in the middle of a word, and the terms can be in
+   * any order or column. The book specification matches the same way.
+   * Only the books up to the limit are kept sorted in a bounded heap.
+   *
+   * @param keyword a search keyword
+   * @param sort    a column to sort, must be accepted by canSortBy
+   * @param order   the ordering
+   * @param fuzzy   true to accept typos
+   * @param includeDeleted true to also match the deleted books
+   * @param limit   the number of first matches to keep
+   * @return Hits the number of matches and the first ones, sorted
+   * @throws NullPointerException     when the keyword is null
+   * @throws IllegalArgumentException when the index can not sort by that column
+   */
+  public Hits search(String keyword, String sort, ORDER order, boolean fuzzy,
+      boolean includeDeleted, int limit) {
+    Objects.requireNonNull(keyword, "the input keyword must not be null");
+
+    Comparator<IndexedBook> comparator = COMPARATORS.get(sort);
+    if (comparator == null) {
+      throw new IllegalArgumentException(String.format(
+          "the index can not sort by column = %s", sort));
+    }
+    comparator = comparator.thenComparingInt(IndexedBook::getId);
+    if (order == ORDER.desc) {
+      comparator = comparator.reversed();
+    }
+
+    // the last one to keep is on top, to be dropped by a better one
+    PriorityQueue<IndexedBook> first = new PriorityQueue<>(limit + 1, comparator.reversed());
+    RoaringBitmap hits;
+
+    lock.readLock().lock();
+    try {
+      Set<String> terms = new LinkedHashSet<>(tokenize(keyword));
+      hits = fuzzy ? matchFuzzy(terms) : match(terms);
+      hits.andNot(deleted(includeDeleted));
+      for (int id : hits) {
+        first.add(books.get(id));
+        if (first.size() > limit) {
+          first.poll();
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    IndexedBook[] top = new IndexedBook[first.size()];
+    for (int i = top.length - 1; i >= 0; i--) {
+      top[i] = first.poll();
+    }
+
+    return new Hits(hits.getCardinality(), List.of(top), hits);
+  }
+
+  /**
+   * Search for the books having all terms of the keyword, the most relevant first.
+   * Every match is scored with BM25 over the weighted fields, and only the
+   * best ones are kept in a bounded heap instead of sorting every match.
+   * A fuzzy term only scores the books having it without typo.
+   *
+   * @param keyword a search keyword
+   * @param fuzzy   true to accept typos
+   * @param includeDeleted true to also match the deleted books
+   * @param limit   the number of best matches to keep
+   * @return Hits the number of matches and the best ones
+   * @throws NullPointerException when the keyword is null
+   */
+  public Hits searchRelevant(String keyword, boolean fuzzy, boolean includeDeleted,
+      int limit) {
+    Objects.requireNonNull(keyword, "the input keyword must not be null");
+
+    PriorityQueue<ScoredBook> best = new PriorityQueue<>(limit + 1, BY_SCORE);
+    RoaringBitmap hits;
+    int total;
+
+    lock.readLock().lock();
+    try {
+      Set<String> terms = new LinkedHashSet<>(tokenize(keyword));
+      hits = fuzzy ? matchFuzzy(terms) : match(terms);
+      hits.andNot(deleted(includeDeleted));
+      for (int id : hits) {
+        best.add(new ScoredBook(books.get(id), score(id, terms)));
+        if (best.size() > limit) {
+          best.poll();
+        }
+      }
+      total = hits.getCardinality();
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    IndexedBook[] top = new IndexedBook[best.size()];
+    for (int i = top.length - 1; i >= 0; i--) {
+      top[i] = best.poll().book;
+    }
+
+    return new Hits(total, List.of(top), hits);
+  }
+
+  /**
+   * Filter the books by exact values, every filter must match.
+   * The bitmaps of the values are intersected, the smallest first,
+   * and the page is read from the newest book.
+   *
+   * @param filters column -> value, the columns are code, category, status, author
+   * @param offset  the number of books to skip
+   * @param limit   the maximum number of books
+   * @return Hits the number of matches and the requested page
+   * @throws IllegalArgumentException when a column can not be filtered
+   */
+  public Hits filter(Map<String, String> filters, int offset, int limit) {
+    RoaringBitmap hits = null;
+    List<IndexedBook> page = new ArrayList<>(limit);
+
+    lock.readLock().lock();
+    try {
+      List<RoaringBitmap> matches = new ArrayList<>();
+      for (Map.Entry<String, String> filter : filters.entrySet()) {
+        RoaringBitmap ids = new RoaringBitmap();
+        if (FILTER_CODE.equals(filter.getKey())) {
+          Integer id = codes.get(filter.getValue());
+          if (id != null) {
+            ids.add(id);
+          }
+        } else {
+          Map<String, RoaringBitmap> values = bitmaps.get(filter.getKey());
+          if (values == null) {
+            throw new IllegalArgumentException(String.format(
+                "the index can not filter by column = %s", filter.getKey()));
+          }
+          ids = values.getOrDefault(filter.getValue(), ids);
+        }
+        matches.add(ids);
+      }
+      matches.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+
+      for (RoaringBitmap ids : matches) {
+        if (hits == null) {
+          hits = ids.clone();
+        } else {
+          hits.and(ids);
+        }
+      }
+      if (hits == null) {
+        hits = new RoaringBitmap();
+        for (Integer id : books.keySet()) {
+          hits.add(id);
+        }
+      }
+
+      int skipped = 0;
+      IntIterator newest = hits.getReverseIntIterator();
+      while (newest.hasNext() && page.size() < limit) {
+        int id = newest.next();
+        if (skipped++ >= offset) {
+          page.add(books.get(id));
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return new Hits(hits.getCardinality(), page, hits);
+  }
+
+  /**
+   * Count the books of every category and status among the hits.
+   * Only the sizes of the intersections are computed, no bitmap is built.
+   *
+   * @param hits the ids of the hits
+   * @return Map facet -> value -> number of hits having that value
+   * @throws NullPointerException when the hits are null
+   */
+  public Map<String, Map<String, Integer>> facets(RoaringBitmap hits) {
+    Objects.requireNonNull(hits, "the input hits must not be null");
+
+    lock.readLock().lock();
+    try {
+      return countFacets(ids -> RoaringBitmap.andCardinality(ids, hits));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Count the books of every category and status among all books.
+   *
+   * @param includeDeleted true to also count the deleted books
+   * @return Map facet -> value -> number of books having that value
+   */
+  public Map<String, Map<String, Integer>> facets(boolean includeDeleted) {
+    lock.readLock().lock();
+    try {
+      RoaringBitmap deleted = deleted(includeDeleted);
+      return countFacets(ids -> RoaringBitmap.andNotCardinality(ids, deleted));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the most popular titles and authors starting with the prefix,
+   * a title or an author is more popular when more books have it.
+   *
+   * @param prefix a prefix
+   * @param limit  the maximum number of suggestions
+   * @return List the suggestions, the most popular first
+   * @throws NullPointerException when the prefix is null
+   */
+  public List<BookSuggestionDto> suggest(String prefix, int limit) {
+    Objects.requireNonNull(prefix, "the input prefix must not be null");
+
+    List<BookSuggestionDto> result = new ArrayList<>();
+
+    lock.readLock().lock();
+    try {
+      for (SuggestionTree.Completion completion : suggestions.suggest(prefix, limit)) {
+        result.add(new BookSuggestionDto(completion.getText(), completion.getCount()));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the ids to skip, the deleted books unless they are included.
+   * The lock must be held by the caller.
+   */
+  private RoaringBitmap deleted(boolean includeDeleted) {
+    RoaringBitmap deleted = includeDeleted ? null
+        : bitmaps.get(FACET_STATUS).get(STATUS.DELETED.name());
+    return deleted == null ? new RoaringBitmap() : deleted;
+  }
+
+  /**
+   * Count every value of every facet with the given counter.
+   * The lock must be held by the caller.
+   */
+  private Map<String, Map<String, Integer>> countFacets(ToIntFunction<RoaringBitmap> counter) {
+    Map<String, Map<String, Integer>> result = new TreeMap<>();
+    for (String facet : FACETS) {
+      Map<String, Integer> counts = new TreeMap<>();
+      for (Map.Entry<String, RoaringBitmap> value : bitmaps.get(facet).entrySet()) {
+        counts.put(value.getKey(), counter.applyAsInt(value.getValue()));
+      }
+      result.put(facet, counts);
+    }
+    return result;
+  }
+
+  /**
+   * Intersect the postings of all terms, a term being the union of the
+   * postings of the book terms starting with it.
+   * The lock must be held by the caller.
+   */
+  private RoaringBitmap match(Set<String> terms) {
+    RoaringBitmap result = null;
+    for (String term : terms) {
+      RoaringBitmap ids = FastAggregation.or(postings
+          .subMap(term, true, term + Character.MAX_VALUE, false).values().iterator());
+      if (result != null) {
+        ids.and(result);
+      }
+      result = ids;
+      if (result.isEmpty()) {
+        break;
+      }
+    }
+    return result == null ? new RoaringBitmap() : result;
+  }
+
+  /**
+   * Intersect the books of all terms, each term accepting typos.
+   * The lock must be held by the caller.
+   */
+  private RoaringBitmap matchFuzzy(Set<String> terms) {
+    RoaringBitmap result = null;
+    for (String term : terms) {
+      RoaringBitmap ids = new RoaringBitmap();
+      for (Integer id : names.match(term,
+          TrigramIndex.distanceFor(term.length(), maxDistance))) {
+        ids.add(id);
+      }
+      if (result != null) {
+        ids.and(result);
+      }
+      result = ids;
+      if (result.isEmpty()) {
+        break;
+      }
+    }
+    return result == null ? new RoaringBitmap() : result;
+  }
+
+  /**
+   * Score a book with BM25F, every keyword term counts its best
+   * matching term of the book, that is a term starting with it.
+   * The lock must be held by the caller.
+   */
+  private double score(int id, Set<String> terms) {
+    int[] lengths = stats.lengths(id);
+    if (lengths == null) {
+      return 0;
+    }
+    int count = stats.size();
+    double score = 0;
+    for (String term : terms) {
+      double best = 0;
+      for (Map.Entry<String, int[]> entry : stats.frequencies(id).entrySet()) {
+        if (!entry.getKey().startsWith(term)) {
+          continue;
+        }
+
+        // the frequency of every field, weighted and normalized by its length
+        double frequency = 0;
+        int[] frequencies = entry.getValue();
+        for (int field = 0; field < FieldStatistics.FIELDS; field++) {
+          if (frequencies[field] > 0) {
+            double average = stats.averageLength(field);
+            double norm = average > 0 ? 1 - b + b * lengths[field] / average : 1;
+            frequency += weights[field] * frequencies[field] / norm;
+          }
+        }
+
+        RoaringBitmap posting = postings.get(entry.getKey());
+        int df = posting == null ? 0 : posting.getCardinality();
+        double idf = Math.log(1 + (count - df + 0.5) / (df + 0.5));
+
+        best = Math.max(best, idf * frequency * (k1 + 1) / (frequency + k1));
+      }
+      score += best;
+    }
+    return score;
+  }
+
+  /**
+   * The write lock must be held by the caller.
+   */
+  private void doPut(Book book) {
+    doRemove(book.getId());
+
+    Set<String> terms = new HashSet<>();
+    terms.addAll(tokenize(book.getTitle()));
+    terms.addAll(tokenize(book.getAuthor()));
+    terms.addAll(tokenize(book.getCategory()));
+    terms.addAll(tokenize(book.getDescription()));
+
+    for (String term : terms) {
+      postings.computeIfAbsent(term, t -> new RoaringBitmap()).add(book.getId());
+    }
+    termsOfBook.put(book.getId(), terms);
+
+    stats.add(book.getId(), List.of(
+        tokenize(book.getTitle()),
+        tokenize(book.getAuthor()),
+        tokenize(book.getCategory()),
+        tokenize(book.getDescription())));
+
+    Set<String> nameTerms = new HashSet<>();
+    nameTerms.addAll(tokenize(book.getTitle()));
+    nameTerms.addAll(tokenize(book.getAuthor()));
+    for (String term : nameTerms) {
+      names.add(term, book.getId());
+    }
+    namesOfBook.put(book.getId(), nameTerms);
+
+    setBitmap(FACET_CATEGORY, book.getCategory(), book.getId());
+    setBitmap(FACET_STATUS, book.getStatus(), book.getId());
+    setBitmap(FILTER_AUTHOR, book.getAuthor(), book.getId());
+    if (book.getCode() != null) {
+      codes.put(book.getCode(), book.getId());
+    }
+
+    if (!STATUS.DELETED.name().equals(book.getStatus())) {
+      suggestions.add(book.getTitle());
+      suggestions.add(book.getAuthor());
+    }
+    books.put(book.getId(), IndexedBook.of(book));
+  }
+
+  /**
+   * The write lock must be held by the caller.
+   */
+  private void doRemove(int id) {
+    Set<String> terms = termsOfBook.remove(id);
+    if (terms != null) {
+      for (String term : terms) {
+        RoaringBitmap ids = postings.get(term);
+        if (ids != null) {
+          ids.remove(id);
+          if (ids.isEmpty()) {
+            postings.remove(term);
+          }
+        }
+      }
+    }
+    Set<String> nameTerms = namesOfBook.remove(id);
+    if (nameTerms != null) {
+      for (String term : nameTerms) {
+        names.remove(term, id);
+      }
+    }
+    stats.remove(id);
+    IndexedBook old = books.remove(id);
+    if (old == null) {
+      return;
+    }
+    clearBitmap(FACET_CATEGORY, old.getCategory(), id);
+    clearBitmap(FACET_STATUS, old.getStatus(), id);
+    clearBitmap(FILTER_AUTHOR, old.getAuthor(), id);
+    if (old.getCode() != null) {
+      codes.remove(old.getCode(), id);
+    }
+    if (!STATUS.DELETED.name().equals(old.getStatus())) {
+      suggestions.remove(old.getTitle());
+      suggestions.remove(old.getAuthor());
+    }
+  }
+
+  /**
+   * The write lock must be held by the caller.
+   */
+  private void setBitmap(String column, String value, int id) {
+    if (value != null) {
+      bitmaps.get(column).computeIfAbsent(value, v -> new RoaringBitmap()).add(id);
+    }
+  }
+
+  /**
+   * The write lock must be held by the caller.
+   * The bitmap of a value left without book is dropped, except for the
+   * facets, so that a value with no book is still counted as zero.
+   */
+  private void clearBitmap(String column, String value, int id) {
+    RoaringBitmap ids = value == null ? null : bitmaps.get(column).get(value);
+    if (ids != null) {
+      ids.remove(id);
+      if (ids.isEmpty() && !FACETS.contains(column)) {
+        bitmaps.get(column).remove(value);
+      }
+    }
+  }
+}
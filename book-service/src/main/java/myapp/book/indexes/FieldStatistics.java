@@ -0,0 +1,102 @@
+/**
+ * This is the term statistics of the book fields for the relevance score.
+ * For every book it keeps how many times each term appears in each field
+ * and how long each field is, and for all books the total field lengths,
+ * so the average length is known without scanning the books.
+ * It is not thread-safe, the book index guards it with its lock.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.indexes;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FieldStatistics {
+
+  public static final int TITLE = 0;
+  public static final int AUTHOR = 1;
+  public static final int CATEGORY = 2;
+  public static final int DESCRIPTION = 3;
+  public static final int FIELDS = 4;
+
+  // id -> term -> frequency in each field
+  private final Map<Integer, Map<String, int[]>> frequencies = new HashMap<>();
+
+  // id -> number of terms in each field
+  private final Map<Integer, int[]> lengths = new HashMap<>();
+
+  private final long[] totalLengths = new long[FIELDS];
+
+  /**
+   * Count the terms of a book.
+   *
+   * @param id     an id of the book
+   * @param fields the terms of the title, author, category and description
+   */
+  public void add(int id, List<List<String>> fields) {
+    remove(id);
+
+    Map<String, int[]> terms = new HashMap<>();
+    int[] length = new int[FIELDS];
+    for (int field = 0; field < FIELDS; field++) {
+      for (String term : fields.get(field)) {
+        terms.computeIfAbsent(term, t -> new int[FIELDS])[field]++;
+      }
+      length[field] = fields.get(field).size();
+      totalLengths[field] += length[field];
+    }
+    frequencies.put(id, terms);
+    lengths.put(id, length);
+  }
+
+  /**
+   * Forget the terms of a book.
+   *
+   * @param id an id of the book
+   */
+  public void remove(int id) {
+    frequencies.remove(id);
+    int[] length = lengths.remove(id);
+    if (length != null) {
+      for (int field = 0; field < FIELDS; field++) {
+        totalLengths[field] -= length[field];
+      }
+    }
+  }
+
+  /**
+   * Get the terms of a book with their frequency in each field.
+   *
+   * @param id an id of the book
+   * @return Map the frequencies, empty when the book is unknown
+   */
+  public Map<String, int[]> frequencies(int id) {
+    return frequencies.getOrDefault(id, Map.of());
+  }
+
+  /**
+   * Get the length of each field of a book.
+   *
+   * @param id an id of the book
+   * @return int[] the lengths, null when the book is unknown
+   */
+  public int[] lengths(int id) {
+    return lengths.get(id);
+  }
+
+  /**
+   * Get the average length of a field over all books.
+   *
+   * @param field a field
+   * @return double the average length, 0 when there is no book
+   */
+  public double averageLength(int field) {
+    return lengths.isEmpty() ? 0 : (double) totalLengths[field] / lengths.size();
+  }
+
+  public int size() {
+    return lengths.size();
+  }
+}
@@ -0,0 +1,42 @@
+/**
+ * This is the light copy of a book kept in the in-memory index.
+ * Only the short columns are kept so the index stays small.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.indexes;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import myapp.book.dto.book.BookSummaryDto;
+import myapp.book.entities.Book;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class IndexedBook {
+    private final int id;
+    private final String code;
+    private final String title;
+    private final String author;
+    private final String category;
+    private final String status;
+    // the version of the row, 0 for a book just imported
+    private final int version;
+
+    public static IndexedBook of(Book book) {
+        return new IndexedBook(
+            book.getId(),
+            book.getCode(),
+            book.getTitle(),
+            book.getAuthor(),
+            book.getCategory(),
+            book.getStatus(),
+            book.getVersion() == null ? 0 : book.getVersion());
+    }
+
+    public BookSummaryDto toSummary() {
+        return new BookSummaryDto(id, code, title, author, category, status);
+    }
+}
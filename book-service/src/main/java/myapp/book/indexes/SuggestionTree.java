@@ -0,0 +1,263 @@
+/**
+ * This is the radix tree of the completions for the autocomplete.
+ * Every edge holds a run of letters instead of one letter, so a long
+ * title costs a few nodes, and every node keeps the top completions
+ * below it, so a lookup only walks the prefix and reads that list.
+ * A completion is ranked by how many books have it.
+ * It is not thread-safe, the book index guards it with its lock.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.indexes;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class SuggestionTree {
+
+  private static final Comparator<Completion> RANKING = Comparator
+      .comparingInt(Completion::getCount).reversed()
+      .thenComparing(Completion::getKey);
+
+  /**
+   * This is a completion and the number of books having it.
+   */
+  public static class Completion {
+    private final String key;
+    private final String text;
+    private int count;
+
+    private Completion(String key, String text) {
+      this.key = key;
+      this.text = text;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public String getText() {
+      return text;
+    }
+
+    public int getCount() {
+      return count;
+    }
+  }
+
+  private static class Node {
+    private String label;
+    private final Map<Character, Node> children = new HashMap<>(4);
+    private Completion completion;
+    private List<Completion> top = List.of();
+
+    private Node(String label) {
+      this.label = label;
+    }
+  }
+
+  private final Node root = new Node("");
+
+  private final int topSize;
+
+  public SuggestionTree(int topSize) {
+    this.topSize = topSize;
+  }
+
+  /**
+   * Normalize a text into the key it is looked up by.
+   *
+   * @param text a text
+   * @return String the lower case text with single spaces, empty when null
+   */
+  public static String keyOf(String text) {
+    if (text == null) {
+      return "";
+    }
+    return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Count one more book having that text.
+   *
+   * @param text a title or an author
+   */
+  public void add(String text) {
+    String key = keyOf(text);
+    if (key.isEmpty()) {
+      return;
+    }
+
+    List<Node> path = new ArrayList<>();
+    Node node = root;
+    String rest = key;
+    path.add(node);
+
+    while (!rest.isEmpty()) {
+      Node child = node.children.get(rest.charAt(0));
+      if (child == null) {
+        child = new Node(rest);
+        node.children.put(rest.charAt(0), child);
+        node = child;
+        rest = "";
+      } else {
+        int common = commonPrefix(child.label, rest);
+        if (common < child.label.length()) {
+          // split the edge where the texts differ
+          Node middle = new Node(child.label.substring(0, common));
+          child.label = child.label.substring(common);
+          middle.children.put(child.label.charAt(0), child);
+          middle.top = child.top;
+          node.children.put(middle.label.charAt(0), middle);
+          child = middle;
+        }
+        node = child;
+        rest = rest.substring(common);
+      }
+      path.add(node);
+    }
+
+    if (node.completion == null) {
+      node.completion = new Completion(key, text.trim());
+    }
+    node.completion.count++;
+
+    refresh(path);
+  }
+
+  /**
+   * Count one less book having that text.
+   *
+   * @param text a title or an author
+   */
+  public void remove(String text) {
+    String key = keyOf(text);
+    if (key.isEmpty()) {
+      return;
+    }
+
+    List<Node> path = find(key);
+    if (path == null) {
+      return;
+    }
+    Node node = path.get(path.size() - 1);
+    if (node.completion == null || !node.completion.key.equals(key)) {
+      return;
+    }
+
+    if (--node.completion.count <= 0) {
+      node.completion = null;
+      prune(path);
+    }
+
+    refresh(path);
+  }
+
+  /**
+   * Get the top completions starting with the prefix.
+   *
+   * @param prefix a prefix
+   * @param limit  the maximum number of completions
+   * @return List the completions, the most popular first
+   */
+  public List<Completion> suggest(String prefix, int limit) {
+    String rest = keyOf(prefix);
+    Node node = root;
+    while (!rest.isEmpty()) {
+      Node child = node.children.get(rest.charAt(0));
+      if (child == null) {
+        return List.of();
+      }
+      if (rest.length() <= child.label.length()) {
+        if (!child.label.startsWith(rest)) {
+          return List.of();
+        }
+        node = child;
+        break;
+      }
+      if (!rest.startsWith(child.label)) {
+        return List.of();
+      }
+      rest = rest.substring(child.label.length());
+      node = child;
+    }
+    List<Completion> top = node.top;
+    return top.size() <= limit ? top : top.subList(0, limit);
+  }
+
+  /**
+   * Find the nodes down to the node of that exact key.
+   */
+  private List<Node> find(String key) {
+    List<Node> path = new ArrayList<>();
+    Node node = root;
+    String rest = key;
+    path.add(node);
+    while (!rest.isEmpty()) {
+      Node child = node.children.get(rest.charAt(0));
+      if (child == null || !rest.startsWith(child.label)) {
+        return null;
+      }
+      rest = rest.substring(child.label.length());
+      node = child;
+      path.add(node);
+    }
+    return path;
+  }
+
+  /**
+   * Drop the nodes left without completion or children,
+   * and merge a node having a single child into it.
+   */
+  private void prune(List<Node> path) {
+    for (int i = path.size() - 1; i > 0; i--) {
+      Node node = path.get(i);
+      Node parent = path.get(i - 1);
+      if (node.completion == null && node.children.isEmpty()) {
+        parent.children.remove(node.label.charAt(0));
+        path.remove(i);
+      } else if (node.completion == null && node.children.size() == 1) {
+        Node child = node.children.values().iterator().next();
+        child.label = node.label + child.label;
+        parent.children.put(child.label.charAt(0), child);
+        path.set(i, child);
+        break;
+      } else {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Rebuild the top completions from the bottom of the path up.
+   */
+  private void refresh(List<Node> path) {
+    for (int i = path.size() - 1; i >= 0; i--) {
+      Node node = path.get(i);
+      List<Completion> candidates = new ArrayList<>();
+      if (node.completion != null) {
+        candidates.add(node.completion);
+      }
+      for (Node child : node.children.values()) {
+        candidates.addAll(child.top);
+      }
+      candidates.sort(RANKING);
+      node.top = candidates.size() <= topSize
+          ? List.copyOf(candidates)
+          : List.copyOf(candidates.subList(0, topSize));
+    }
+  }
+
+  private static int commonPrefix(String a, String b) {
+    int length = Math.min(a.length(), b.length());
+    int i = 0;
+    while (i < length && a.charAt(i) == b.charAt(i)) {
+      i++;
+    }
+    return i;
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * This is the index of the terms by their trigrams, for the fuzzy search.
+ * A term is padded as "  term " and cut into three-letter grams. A term
+ * within an edit distance d of the query term still shares at least
+ * (number of grams - 3d) grams with it, because an edit changes at most
+ * three grams, so only the terms sharing that many grams are compared
+ * with the real edit distance. The work depends on the number of terms
+ * sharing grams with the query, not on the number of books.
+ * It is not thread-safe, the book index guards it with its lock.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.indexes;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class TrigramIndex {
+
+  // gram -> terms having that gram
+  private final Map<String, Set<String>> terms = new HashMap<>();
+
+  // term -> ids of the books having that term
+  private final Map<String, Set<Integer>> postings = new HashMap<>();
+
+  /**
+   * Get the largest edit distance accepted for a term of that length.
+   *
+   * @param length the length of a term
+   * @param max    the largest distance ever accepted
+   * @return int 0 up to 2 letters, 1 up to 5 letters, max after that
+   */
+  public static int distanceFor(int length, int max) {
+    if (length <= 2) {
+      return 0;
+    }
+    if (length <= 5) {
+      return Math.min(1, max);
+    }
+    return max;
+  }
+
+  public void add(String term, int id) {
+    Set<Integer> ids = postings.get(term);
+    if (ids == null) {
+      ids = new HashSet<>();
+      postings.put(term, ids);
+      for (String gram : gramsOf(term)) {
+        terms.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+      }
+    }
+    ids.add(id);
+  }
+
+  public void remove(String term, int id) {
+    Set<Integer> ids = postings.get(term);
+    if (ids == null) {
+      return;
+    }
+    ids.remove(id);
+    if (ids.isEmpty()) {
+      postings.remove(term);
+      for (String gram : gramsOf(term)) {
+        Set<String> withGram = terms.get(gram);
+        if (withGram != null) {
+          withGram.remove(term);
+          if (withGram.isEmpty()) {
+            terms.remove(gram);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Find the books having a term within the given edit distance.
+   *
+   * @param term        a query term
+   * @param maxDistance the largest edit distance
+   * @return Set the ids of the matching books
+   */
+  public Set<Integer> match(String term, int maxDistance) {
+    Set<Integer> ids = new HashSet<>();
+
+    if (maxDistance == 0) {
+      Set<Integer> exact = postings.get(term);
+      if (exact != null) {
+        ids.addAll(exact);
+      }
+      return ids;
+    }
+
+    Set<String> grams = gramsOf(term);
+    int threshold = Math.max(1, grams.size() - 3 * maxDistance);
+
+    // count the grams each candidate term shares with the query
+    Map<String, Integer> shared = new HashMap<>();
+    for (String gram : grams) {
+      Set<String> withGram = terms.get(gram);
+      if (withGram == null) {
+        continue;
+      }
+      for (String candidate : withGram) {
+        if (Math.abs(candidate.length() - term.length()) <= maxDistance) {
+          shared.merge(candidate, 1, Integer::sum);
+        }
+      }
+    }
+
+    shared.forEach((candidate, count) -> {
+      if (count >= threshold && withinDistance(term, candidate, maxDistance)) {
+        ids.addAll(postings.get(candidate));
+      }
+    });
+
+    return ids;
+  }
+
+  public int size() {
+    return postings.size();
+  }
+
+  private static Set<String> gramsOf(String term) {
+    String padded = "  " + term + " ";
+    Set<String> grams = new LinkedHashSet<>();
+    for (int i = 0; i + 3 <= padded.length(); i++) {
+      grams.add(padded.substring(i, i + 3));
+    }
+    return grams;
+  }
+
+  /**
+   * Check the Levenshtein distance, giving up as soon as a whole row
+   * of the table is over the limit.
+   */
+  static boolean withinDistance(String a, String b, int max) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      int rowMin = current[0];
+      for (int j = 1; j <= b.length(); j++) {
+        int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1),
+            previous[j - 1] + cost);
+        rowMin = Math.min(rowMin, current[j]);
+      }
+      if (rowMin > max) {
+        return false;
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[b.length()] <= max;
+  }
+}
@@ -5,18 +5,30 @@
  */
 package myapp.book.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import myapp.book.dto.book.BookVersionDto;
 import myapp.book.entities.Book;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Integer> {
-    boolean existsByCode(String code);
-    Optional<Book> findByCodeAndIdNot(String code, int id);
+public interface BookRepository extends JpaRepository<Book, Integer>, BookRepositoryCustom {
     Page<Book> findAll(Specification<Book> specification, Pageable pageable);
+    long count(Specification<Book> specification);
+
+    // read-write, so it is routed to the primary, a replica may be behind
+    @Transactional
+    List<Book> findByIdGreaterThanOrderByIdAsc(int id, Pageable pageable);
+
+    @Query("select new myapp.book.dto.book.BookVersionDto(b.id, b.version, b.updatedAt) " +
+        "from Book b where b.id = :id")
+    Optional<BookVersionDto> findVersionById(@Param("id") int id);
 }
\ No newline at end of file
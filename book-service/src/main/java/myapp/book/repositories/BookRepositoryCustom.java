@@ -0,0 +1,49 @@
+/**
+ * This is the custom part of the book repository.
+ * 
+ * @author Phann Malinka
+ */
+package myapp.book.repositories;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.springframework.data.jpa.domain.Specification;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import myapp.book.dto.book.BookSummaryDto;
+import myapp.book.entities.Book;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * This is a book before and after an update.
+     */
+    @Getter
+    @AllArgsConstructor
+    class Change {
+        private final Book before;
+        private final Book after;
+    }
+
+    List<BookSummaryDto> findSummaries(Specification<Book> specification, int offset, int limit);
+
+    Optional<Book> insertIfAbsent(Book book);
+
+    Optional<Change> updateChanged(int id, Book changes);
+
+    List<Integer> allocateIds(int count);
+
+    int[] insertAll(List<Book> books);
+
+    void forEach(int fetchSize, Consumer<Book> consumer);
+
+    List<Integer> archiveDeleted(Instant deletedBefore, int limit);
+
+    Instant currentTime();
+
+    List<Book> findChangedAfter(Instant updatedAt, int id, int limit);
+
+    List<Integer> findArchivedSince(Instant archivedAt);
+}
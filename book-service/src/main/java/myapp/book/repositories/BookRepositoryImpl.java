@@ -0,0 +1,398 @@
+/**
+ * This is the implementation of the custom book repository.
+ * 
+ * @author Phann Malinka
+ */
+package myapp.book.repositories;
+
+import static myapp.book.entities.PooledSequenceGenerator.ALLOCATION_SIZE;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import myapp.book.dto.book.BookSummaryDto;
+import myapp.book.entities.Book;
+import myapp.book.utils.TransactionUtil;
+
+@Transactional(readOnly = true)
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+    private static final String INSERT_IF_ABSENT =
+        "INSERT INTO book (id, code, title, author, category, status, description) " +
+        "VALUES (:id, :code, :title, :author, :category, :status, :description) " +
+        "ON CONFLICT ON CONSTRAINT book_unique_code DO NOTHING " +
+        "RETURNING id, version, updated_at";
+
+    private static final String INSERT_WITH_ID =
+        "INSERT INTO book (id, code, title, author, category, status, description) " +
+        "VALUES (:id, :code, :title, :author, :category, :status, :description) " +
+        "ON CONFLICT ON CONSTRAINT book_unique_code DO NOTHING";
+
+    private static final String SELECT_ALL =
+        "SELECT id, code, title, author, category, status, description FROM book ORDER BY id";
+
+    // a held book is kept, the hold still refers to it
+    private static final String ARCHIVE_DELETED =
+        "WITH moved AS (" +
+        "DELETE FROM book WHERE id IN (" +
+        "SELECT b.id FROM book b WHERE b.status = 'DELETED' AND b.updated_at < :before " +
+        "AND NOT EXISTS (SELECT 1 FROM user_hold_book h WHERE h.book_id = b.id) " +
+        "ORDER BY b.id LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+        "RETURNING id, code, title, author, category, status, description, version, updated_at) " +
+        "INSERT INTO book_archive " +
+        "(id, code, title, author, category, status, description, version, updated_at) " +
+        "SELECT id, code, title, author, category, status, description, version, updated_at " +
+        "FROM moved RETURNING id";
+
+    // every sequence value is the first id of a block, the same as the entity ids
+    private static final String ALLOCATE_IDS =
+        "SELECT b.first + n.i FROM " +
+        "(SELECT nextval('book_id_seq') AS first FROM generate_series(1, :blocks)) b, " +
+        "generate_series(0, :size - 1) AS n(i) " +
+        "ORDER BY 1 LIMIT :count";
+
+    private static final String NEXT_BLOCK = "SELECT nextval('book_id_seq')";
+
+    private static final String SELECT_CHANGED =
+        "SELECT id, code, title, author, category, status, description, version, updated_at " +
+        "FROM book WHERE (updated_at, id) > (:updatedAt, :id) " +
+        "ORDER BY updated_at, id LIMIT :limit";
+
+    private static final String SELECT_ARCHIVED =
+        "SELECT id FROM book_archive WHERE archived_at >= :archivedAt";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    // the ids left in the block taken last, handed out one by one
+    private int nextId;
+    private int blockEnd;
+
+    /**
+     * Find the summaries of the books matching the specification.
+     * Only the short columns are selected and no entity is managed,
+     * and unlike a page, no count query is run.
+     *
+     * @param specification a specification, it also decides the ordering
+     * @param offset        the number of rows to skip
+     * @param limit         the maximum number of rows
+     * @return List a list of book summaries
+     */
+    @Override
+    public List<BookSummaryDto> findSummaries(Specification<Book> specification,
+        int offset, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookSummaryDto> query = criteriaBuilder.createQuery(BookSummaryDto.class);
+        Root<Book> root = query.from(Book.class);
+        query.select(criteriaBuilder.construct(BookSummaryDto.class,
+            root.get("id"),
+            root.get("code"),
+            root.get("title"),
+            root.get("author"),
+            root.get("category"),
+            root.get("status")));
+
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+
+        return entityManager.createQuery(query)
+            .setFirstResult(offset)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    /**
+     * Insert a book unless its code is already taken, in one statement.
+     * The id comes from a block of the sequence like the entity ids, the
+     * id is lost when the code is taken.
+     *
+     * @param book a book to insert
+     * @return Optional the inserted book with its id, empty when the code is taken
+     */
+    @Override
+    @Transactional
+    public Optional<Book> insertIfAbsent(Book book) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("id", nextId())
+            .addValue("code", book.getCode())
+            .addValue("title", book.getTitle())
+            .addValue("author", book.getAuthor())
+            .addValue("category", book.getCategory())
+            .addValue("status", book.getStatus())
+            .addValue("description", book.getDescription());
+
+        List<Book> inserted = jdbcTemplate.query(INSERT_IF_ABSENT, params, (rs, i) -> {
+            Book created = new Book(book.getCode(), book.getTitle(), book.getAuthor(),
+                book.getCategory(), book.getStatus(), book.getDescription());
+            created.setId(rs.getInt("id"));
+            created.setVersion(rs.getInt("version"));
+            created.setUpdatedAt(rs.getTimestamp("updated_at").toInstant());
+            return created;
+        });
+
+        return inserted.stream().findFirst();
+    }
+
+    /**
+     * Update only the given columns of a book, in one statement.
+     * A column is given when it is not null, and the row is only written
+     * when one of them is different. The old row is locked and returned,
+     * the new row is the old one with the given columns.
+     *
+     * @param id      an id of the book
+     * @param changes a book having only the columns to change
+     * @return Optional the book before and after, empty when the book is
+     *                  not found or nothing is different
+     * @throws org.springframework.dao.DuplicateKeyException when the new code is taken
+     */
+    @Override
+    @Transactional
+    public Optional<Change> updateChanged(int id, Book changes) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("code", changes.getCode());
+        columns.put("title", changes.getTitle());
+        columns.put("author", changes.getAuthor());
+        columns.put("category", changes.getCategory());
+        columns.put("status", changes.getStatus());
+        columns.put("description", changes.getDescription());
+        columns.values().removeIf(value -> value == null);
+
+        if (columns.isEmpty()) {
+            return Optional.empty();
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource("id", id);
+        List<String> sets = new ArrayList<>();
+        List<String> differences = new ArrayList<>();
+        columns.forEach((column, value) -> {
+            params.addValue(column, value);
+            sets.add(String.format("%s = :%s", column, column));
+            differences.add(String.format("b.%s IS DISTINCT FROM :%s", column, column));
+        });
+
+        String sql = String.format(
+            "UPDATE book b SET %s, version = b.version + 1, updated_at = CURRENT_TIMESTAMP " +
+            "FROM (SELECT * FROM book WHERE id = :id FOR UPDATE) old " +
+            "WHERE b.id = old.id AND (%s) " +
+            "RETURNING old.id, old.code, old.title, old.author, old.category, " +
+            "old.status, old.description, b.version, b.updated_at",
+            String.join(", ", sets),
+            String.join(" OR ", differences));
+
+        List<Change> updated = jdbcTemplate.query(sql, params, (rs, i) -> {
+            Book before = mapBook(rs);
+            Book after = mapBook(rs);
+            after.setCode(columns.getOrDefault("code", before.getCode()));
+            after.setTitle(columns.getOrDefault("title", before.getTitle()));
+            after.setAuthor(columns.getOrDefault("author", before.getAuthor()));
+            after.setCategory(columns.getOrDefault("category", before.getCategory()));
+            after.setStatus(columns.getOrDefault("status", before.getStatus()));
+            after.setDescription(columns.getOrDefault("description", before.getDescription()));
+            after.setVersion(rs.getInt("version"));
+            after.setUpdatedAt(rs.getTimestamp("updated_at").toInstant());
+            return new Change(before, after);
+        });
+
+        // the cached entity is older than the row now, it is evicted again
+        // after the commit in case a request cached the old row meanwhile
+        if (!updated.isEmpty()) {
+            Cache cache = entityManager.getEntityManagerFactory().getCache();
+            cache.evict(Book.class, id);
+            TransactionUtil.afterCommit(() -> cache.evict(Book.class, id));
+        }
+
+        return updated.stream().findFirst();
+    }
+
+    /**
+     * Take many ids from the book sequence in one round trip.
+     * The ids are taken by whole blocks, the rest of the last block is lost.
+     *
+     * @param count the number of ids
+     * @return List the ids
+     */
+    @Override
+    @Transactional
+    public List<Integer> allocateIds(int count) {
+        return jdbcTemplate.queryForList(ALLOCATE_IDS,
+            new MapSqlParameterSource()
+                .addValue("blocks", (count + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE)
+                .addValue("size", ALLOCATION_SIZE)
+                .addValue("count", count),
+            Integer.class);
+    }
+
+    /**
+     * Insert many books having their ids already, as one JDBC batch.
+     * A book whose code is already taken is skipped.
+     *
+     * @param books the books
+     * @return int[] 1 for an inserted book, 0 for a skipped one, in the same order
+     */
+    @Override
+    @Transactional
+    public int[] insertAll(List<Book> books) {
+        MapSqlParameterSource[] batch = new MapSqlParameterSource[books.size()];
+        for (int i = 0; i < batch.length; i++) {
+            Book book = books.get(i);
+            batch[i] = new MapSqlParameterSource()
+                .addValue("id", book.getId())
+                .addValue("code", book.getCode())
+                .addValue("title", book.getTitle())
+                .addValue("author", book.getAuthor())
+                .addValue("category", book.getCategory())
+                .addValue("status", book.getStatus())
+                .addValue("description", book.getDescription());
+        }
+        return jdbcTemplate.batchUpdate(INSERT_WITH_ID, batch);
+    }
+
+    /**
+     * Walk all books ordered by id with a forward-only cursor.
+     * Only one fetch of rows is held at a time, and the transaction keeps
+     * the cursor open, so the memory does not grow with the number of books.
+     *
+     * @param fetchSize the number of rows fetched at once
+     * @param consumer  gets every book, a slow consumer slows the fetches
+     */
+    @Override
+    public void forEach(int fetchSize, Consumer<Book> consumer) {
+        jdbcTemplate.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_ALL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapBook(rs)));
+    }
+
+    /**
+     * Move a batch of the books deleted long ago to the archive table.
+     * The rows locked by another compaction are skipped, so two instances
+     * never move the same book.
+     *
+     * @param deletedBefore only the books deleted before that time are moved
+     * @param limit         the maximum number of books to move
+     * @return List the ids of the moved books
+     */
+    @Override
+    @Transactional
+    public List<Integer> archiveDeleted(Instant deletedBefore, int limit) {
+        List<Integer> ids = jdbcTemplate.queryForList(ARCHIVE_DELETED,
+            new MapSqlParameterSource()
+                .addValue("before", Timestamp.from(deletedBefore))
+                .addValue("limit", limit),
+            Integer.class);
+
+        // evicted again after the commit, like an update
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        for (Integer id : ids) {
+            cache.evict(Book.class, id);
+        }
+        TransactionUtil.afterCommit(() -> ids.forEach(id -> cache.evict(Book.class, id)));
+
+        return ids;
+    }
+
+    /**
+     * Get the time of the database, the clock of the updated_at column.
+     * It reads the primary, the clock the writes are stamped with.
+     *
+     * @return Instant the current time
+     */
+    @Override
+    @Transactional
+    public Instant currentTime() {
+        return jdbcTemplate.getJdbcTemplate()
+            .queryForObject("SELECT CURRENT_TIMESTAMP", Timestamp.class).toInstant();
+    }
+
+    /**
+     * Find the books written after a position, ordered by their last update
+     * then by id, so the next batch starts after the last book of this one.
+     * It reads the primary, a replica may not have the last writes yet.
+     *
+     * @param updatedAt the last update of the position
+     * @param id        the id of the position
+     * @param limit     the maximum number of books
+     * @return List the books with their version and last update
+     */
+    @Override
+    @Transactional
+    public List<Book> findChangedAfter(Instant updatedAt, int id, int limit) {
+        return jdbcTemplate.query(SELECT_CHANGED,
+            new MapSqlParameterSource()
+                .addValue("updatedAt", Timestamp.from(updatedAt))
+                .addValue("id", id)
+                .addValue("limit", limit),
+            (rs, i) -> {
+                Book book = mapBook(rs);
+                book.setVersion(rs.getInt("version"));
+                book.setUpdatedAt(rs.getTimestamp("updated_at").toInstant());
+                return book;
+            });
+    }
+
+    /**
+     * Find the ids of the books archived since the given time.
+     * It reads the primary, a replica may not have the last archives yet.
+     *
+     * @param archivedAt the time
+     * @return List the ids
+     */
+    @Override
+    @Transactional
+    public List<Integer> findArchivedSince(Instant archivedAt) {
+        return jdbcTemplate.queryForList(SELECT_ARCHIVED,
+            new MapSqlParameterSource("archivedAt", Timestamp.from(archivedAt)),
+            Integer.class);
+    }
+
+    /**
+     * Take the next id, one sequence call per block of ids.
+     */
+    private synchronized int nextId() {
+        if (nextId >= blockEnd) {
+            nextId = jdbcTemplate.getJdbcTemplate().queryForObject(NEXT_BLOCK, Integer.class);
+            blockEnd = nextId + ALLOCATION_SIZE;
+        }
+        return nextId++;
+    }
+
+    private static Book mapBook(ResultSet rs) throws SQLException {
+        Book book = new Book(
+            rs.getString("code"),
+            rs.getString("title"),
+            rs.getString("author"),
+            rs.getString("category"),
+            rs.getString("status"),
+            rs.getString("description"));
+        book.setId(rs.getInt("id"));
+        return book;
+    }
+}
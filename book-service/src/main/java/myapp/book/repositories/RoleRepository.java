@@ -6,16 +6,24 @@
 package myapp.book.repositories;
 
 import java.util.Optional;
+import javax.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import myapp.book.entities.Role;
 
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Integer> {
     boolean existsByName(String name);
+
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+        @QueryHint(name = "org.hibernate.cacheRegion", value = "query.role")
+    })
     Optional<Role> findByName(String name);
+
     Page<Role> findAll(Specification<Role> specification, Pageable pageable);
 }
@@ -0,0 +1,12 @@
+/**
+ * This is the custom part of the user repository.
+ * 
+ * @author Phann Malinka
+ */
+package myapp.book.repositories;
+
+public interface UserRepositoryCustom {
+    boolean hold(int userId, int bookId, int max);
+    boolean unhold(int userId, int bookId);
+    boolean isHolding(int userId, int bookId);
+}
@@ -0,0 +1,97 @@
+/**
+ * This is the implementation of the custom part of the user repository.
+ * A hold is one statement: the hold count of the user is increased only
+ * when it is under the limit and the book is not held yet, and the hold
+ * row is only inserted when the count was increased. The user row is
+ * locked by that update, so the holds of one user are serialized and
+ * the limit can not be passed by concurrent requests, while the unique
+ * constraint on the user and book rejects a concurrent duplicate.
+ * 
+ * @author Phann Malinka
+ */
+package myapp.book.repositories;
+
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional(readOnly = true)
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private static final String HOLD =
+        "WITH counted AS (" +
+        "  UPDATE \"user\" SET hold_count = hold_count + 1 " +
+        "  WHERE id = :userId AND hold_count < :max " +
+        "  AND NOT EXISTS (SELECT 1 FROM user_hold_book " +
+        "    WHERE user_id = :userId AND book_id = :bookId) " +
+        "  RETURNING id) " +
+        "INSERT INTO user_hold_book (user_id, book_id) " +
+        "SELECT id, :bookId FROM counted " +
+        "RETURNING id";
+
+    private static final String UNHOLD =
+        "WITH released AS (" +
+        "  DELETE FROM user_hold_book WHERE user_id = :userId AND book_id = :bookId " +
+        "  RETURNING user_id) " +
+        "UPDATE \"user\" SET hold_count = hold_count - 1 " +
+        "WHERE id IN (SELECT user_id FROM released) " +
+        "RETURNING id";
+
+    private static final String IS_HOLDING =
+        "SELECT EXISTS (SELECT 1 FROM user_hold_book " +
+        "WHERE user_id = :userId AND book_id = :bookId)";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Hold a book for a user unless it is already held or the user
+     * already holds the maximum.
+     *
+     * @param userId an id of the user
+     * @param bookId an id of the book
+     * @param max    the maximum number of books a user can hold
+     * @return boolean true when the book is held, false when the user is not
+     *                 found, already holds that book or holds the maximum
+     * @throws org.springframework.dao.DuplicateKeyException when the same hold
+     *         is done concurrently
+     */
+    @Override
+    @Transactional
+    public boolean hold(int userId, int bookId, int max) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("userId", userId)
+            .addValue("bookId", bookId)
+            .addValue("max", max);
+        List<Integer> ids = jdbcTemplate.queryForList(HOLD, params, Integer.class);
+        return !ids.isEmpty();
+    }
+
+    /**
+     * Release a book from a user.
+     *
+     * @param userId an id of the user
+     * @param bookId an id of the book
+     * @return boolean true when the book is released, false when it was not held
+     */
+    @Override
+    @Transactional
+    public boolean unhold(int userId, int bookId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("userId", userId)
+            .addValue("bookId", bookId);
+        List<Integer> ids = jdbcTemplate.queryForList(UNHOLD, params, Integer.class);
+        return !ids.isEmpty();
+    }
+
+    @Override
+    public boolean isHolding(int userId, int bookId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("userId", userId)
+            .addValue("bookId", bookId);
+        return Boolean.TRUE.equals(
+            jdbcTemplate.queryForObject(IS_HOLDING, params, Boolean.class));
+    }
+}
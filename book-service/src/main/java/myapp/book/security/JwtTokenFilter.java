@@ -7,6 +7,8 @@
 package myapp.book.security;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -16,6 +18,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -23,7 +26,9 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 
 @Component
 public class JwtTokenFilter extends OncePerRequestFilter {
@@ -34,6 +39,23 @@ public class JwtTokenFilter extends OncePerRequestFilter {
 	@Autowired
 	private JwtTokenUtil jwtTokenUtil;
 
+	// trust the id and roles in the token instead of loading the user
+	@Value("${security.jwt.stateless:true}")
+	private boolean stateless;
+
+	// how long in seconds the roles in a token are trusted, then the user is
+	// reloaded and that user is trusted as long. A role change is seen after
+	// at most this window plus the 10 minutes of the user caches of hibernate.
+	@Value("${security.jwt.claims-max-age:300}")
+	private long claimsMaxAge;
+
+	// maximum number of reloaded users to remember
+	@Value("${security.jwt.user-cache-size:10000}")
+	private int userCacheSize;
+
+	// username -> the user reloaded for a token with stale claims
+	private final Map<String, LoadedUser> loaded = new ConcurrentHashMap<>();
+
 	private final Logger logger = LoggerFactory.getLogger(JwtTokenFilter.class);
 
 	@Override
@@ -44,16 +66,21 @@ public class JwtTokenFilter extends OncePerRequestFilter {
 
 		String username = null;
 		String jwtToken = null;
+		Claims claims = null;
 		// JWT Token is in the form "Bearer token". Remove Bearer word and get
 		// only the Token
 		if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
 			jwtToken = requestTokenHeader.substring(7);
 			try {
-				username = jwtTokenUtil.getUsernameFromToken(jwtToken);
+				// the signature and the expiration are verified once here
+				claims = jwtTokenUtil.getAllClaimsFromToken(jwtToken);
+				username = claims.getSubject();
 			} catch (IllegalArgumentException e) {
-				System.out.println("Unable to get JWT Token");
+				logger.warn("Unable to get JWT Token");
 			} catch (ExpiredJwtException e) {
-				System.out.println("JWT Token has expired");
+				logger.warn("JWT Token has expired");
+			} catch (JwtException e) {
+				logger.warn("JWT Token is not valid: {}", e.getMessage());
 			}
 		} else {
 			logger.warn("JWT Token does not begin with Bearer String");
@@ -65,11 +92,19 @@ public class JwtTokenFilter extends OncePerRequestFilter {
 		// Once we get the token validate it.
 		if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-			UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+			UserDetails userDetails = null;
+			if (stateless) {
+				userDetails = jwtTokenUtil.getUserDetailsFromClaims(claims, claimsMaxAge);
+			}
+
+			// old tokens without claims and stale claims go to database
+			if (userDetails == null) {
+				userDetails = stateless ? loadUser(username)
+						: this.userDetailsService.loadUserByUsername(username);
+			}
 
-			// if token is valid configure Spring Security to manually set
-			// authentication
-			if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
+			// the token is already verified, it only has to belong to that user
+			if (username.equals(userDetails.getUsername())) {
 
 				UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
 						userDetails, null, userDetails.getAuthorities());
@@ -84,4 +119,39 @@ public class JwtTokenFilter extends OncePerRequestFilter {
 		chain.doFilter(request, response);
 	}
 
+	/**
+	 * Load the user of a token with stale claims, at most once per window.
+	 * The rest of the life of a token does not go to database again.
+	 */
+	private UserDetails loadUser(String username) {
+		final long now = System.currentTimeMillis();
+		LoadedUser user = loaded.get(username);
+		if (user != null && user.loadedAt + claimsMaxAge * 1000 >= now) {
+			return user.details;
+		}
+
+		logger.debug("load user = {} from database", username);
+		UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+
+		if (loaded.size() >= userCacheSize) {
+			loaded.values().removeIf(u -> u.loadedAt + claimsMaxAge * 1000 < now);
+		}
+		if (loaded.size() < userCacheSize) {
+			loaded.put(username, new LoadedUser(userDetails, now));
+		}
+		return userDetails;
+	}
+
+	private static class LoadedUser {
+
+		private final UserDetails details;
+
+		private final long loadedAt;
+
+		private LoadedUser(UserDetails details, long loadedAt) {
+			this.details = details;
+			this.loadedAt = loadedAt;
+		}
+	}
+
 }
\ No newline at end of file
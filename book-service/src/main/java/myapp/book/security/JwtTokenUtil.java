@@ -1,17 +1,29 @@
 /**
  * This is the utility class for JWT.
  * This class provides some utility functions to work with JWT.
- * 
+ * The key and the parser are built once, every token is parsed once,
+ * and the tokens already verified are remembered until they expire.
+ *
  * @author Phann Malinka
  */
 package myapp.book.security;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import javax.crypto.SecretKey;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import io.jsonwebtoken.*;
@@ -23,9 +35,30 @@ public class JwtTokenUtil {
 
 	public static final long JWT_TOKEN_VALIDITY = 5 * 60 * 60; // 5hours
 
+	public static final String CLAIM_USER_ID = "uid";
+
+	public static final String CLAIM_ROLES = "roles";
+
 	@Value("${security.secret}")
 	private String secret;
 
+	// maximum number of verified tokens to remember
+	@Value("${security.jwt.verified-cache-size:10000}")
+	private int verifiedCacheSize;
+
+	private SecretKey secretKey;
+
+	private JwtParser parser;
+
+	// digest of a token -> its claims, kept until the token expires
+	private final Map<String, Claims> verified = new ConcurrentHashMap<>();
+
+	@PostConstruct
+	public void init() {
+		secretKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+		parser = Jwts.parserBuilder().setSigningKey(secretKey).build();
+	}
+
 	//retrieve username from jwt token
 	public String getUsernameFromToken(String token) {
 		return getClaimFromToken(token, Claims::getSubject);
@@ -40,12 +73,36 @@ public class JwtTokenUtil {
 		final Claims claims = getAllClaimsFromToken(token);
 		return claimsResolver.apply(claims);
 	}
-    //for retrieveing any information from token we will need the secret key
-	private Claims getAllClaimsFromToken(String token) {
-		SecretKey secretKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
-		//return Jwts.parser().setSigningKey(secret.getBytes()).parseClaimsJws(token).getBody();
-		//return Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
-		return Jwts.parserBuilder().setSigningKey(secretKey).build().parseClaimsJws(token).getBody();
+
+	//verify the signature and the expiration then return the claims.
+	//a token seen before is only looked up by its digest, without HMAC.
+	//throws ExpiredJwtException, JwtException or IllegalArgumentException
+	//when the token is not valid
+	public Claims getAllClaimsFromToken(String token) {
+		if (token == null || token.isEmpty()) {
+			throw new IllegalArgumentException("the input token must not be empty");
+		}
+
+		final String digest = digest(token);
+		Claims claims = verified.get(digest);
+		if (claims != null) {
+			if (!claims.getExpiration().before(new Date())) {
+				return claims;
+			}
+			verified.remove(digest);
+		}
+
+		claims = parser.parseClaimsJws(token).getBody();
+
+		if (claims.getExpiration() != null) {
+			if (verified.size() >= verifiedCacheSize) {
+				evictExpired();
+			}
+			if (verified.size() < verifiedCacheSize) {
+				verified.put(digest, claims);
+			}
+		}
+		return claims;
 	}
 
 	//check if the token has expired
@@ -54,19 +111,48 @@ public class JwtTokenUtil {
 		return expiration.before(new Date());
 	}
 
-	//generate token for user
+	//generate token for user, the id and roles travel in the token
+	//so the user does not need to be loaded again on every request
 	public String generateToken(UserDetails userDetails) {
 		Map<String, Object> claims = new HashMap<>();
+		if (userDetails instanceof UserDetailsImpl) {
+			claims.put(CLAIM_USER_ID, ((UserDetailsImpl) userDetails).getId());
+		}
+		claims.put(CLAIM_ROLES, userDetails.getAuthorities().stream()
+				.map(GrantedAuthority::getAuthority)
+				.collect(Collectors.toList()));
 		return doGenerateToken(claims, userDetails.getUsername());
 	}
 
+	//build the user details from the verified claims only, without database.
+	//return null when the token has no such claims or when it was issued
+	//more than maxAge seconds ago, so role changes are picked up in time
+	public UserDetailsImpl getUserDetailsFromClaims(Claims claims, long maxAge) {
+		Integer id = claims.get(CLAIM_USER_ID, Integer.class);
+		Object roles = claims.get(CLAIM_ROLES);
+		if (id == null || !(roles instanceof List)) {
+			return null;
+		}
+
+		Date issuedAt = claims.getIssuedAt();
+		if (issuedAt == null ||
+				issuedAt.getTime() + maxAge * 1000 < System.currentTimeMillis()) {
+			return null;
+		}
+
+		List<GrantedAuthority> authorities = ((List<?>) roles).stream()
+				.map(role -> new SimpleGrantedAuthority(String.valueOf(role)))
+				.collect(Collectors.toList());
+
+		return new UserDetailsImpl(id, claims.getSubject(), null, authorities);
+	}
+
 	//while creating the token -
 	//1. Define  claims of the token, like Issuer, Expiration, Subject, and the ID
 	//2. Sign the JWT using the HS512 algorithm and secret key.
 	//3. According to JWS Compact Serialization(https://tools.ietf.org/html/draft-ietf-jose-json-web-signature-41#section-3.1)
-	//   compaction of the JWT to a URL-safe string 
+	//   compaction of the JWT to a URL-safe string
 	private String doGenerateToken(Map<String, Object> claims, String subject) {
-		SecretKey secretKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
 		return Jwts.builder().setClaims(claims).setSubject(subject).setIssuedAt(new Date(System.currentTimeMillis()))
 				.setExpiration(new Date(System.currentTimeMillis() + JWT_TOKEN_VALIDITY * 1000))
 				.signWith(secretKey, SignatureAlgorithm.HS512).compact();
@@ -77,4 +163,20 @@ public class JwtTokenUtil {
 		final String username = getUsernameFromToken(token);
 		return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
 	}
-}
\ No newline at end of file
+
+	//the token itself is not kept, only its sha-256
+	private String digest(String token) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(
+					md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void evictExpired() {
+		final Date now = new Date();
+		verified.values().removeIf(claims -> claims.getExpiration().before(now));
+	}
+}
@@ -106,6 +106,16 @@ public class SecurityConfig {
         RoleEnum.API_CLIENT.name()
       )
 
+      // fetching many books at once is a read, even by post
+      .antMatchers(HttpMethod.POST, "/api/v1/book/batch")
+      .hasAnyAuthority(
+        RoleEnum.ADMIN.name(),
+        RoleEnum.LIBRARIAN.name(),
+        RoleEnum.PROFESSOR.name(),
+        RoleEnum.STUDENT.name(),
+        RoleEnum.API_CLIENT.name()
+      )
+
       // only admin and librarian can add or edit book detail
       .antMatchers(HttpMethod.POST, "/api/v1/book/**")
       .hasAnyAuthority(RoleEnum.ADMIN.name(), RoleEnum.LIBRARIAN.name())
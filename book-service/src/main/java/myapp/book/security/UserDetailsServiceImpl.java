@@ -11,6 +11,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import myapp.book.entities.User;
 import myapp.book.repositories.UserRepository;
 
@@ -21,6 +22,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     private UserRepository userRepo;
 
     @Override
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         
         User user = userRepo.findByUsername(username)
@@ -17,6 +17,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import myapp.book.dto.auth.LoginRequestDto;
 import myapp.book.dto.auth.LoginResponseDto;
 import myapp.book.dto.auth.ProfileResponseDto;
@@ -117,6 +118,7 @@ public class AuthService {
    * @throws ResourceNotFoundException when the given role is not found
    * @throws DatabaseException when error from database
    */
+  @Transactional
   public User signup(SignupRequestDto requestDto) {
     Objects.requireNonNull(
       requestDto,
@@ -252,6 +254,7 @@ public class AuthService {
    * @throws GeneralException when there is no username in that authentication object
    * @throws ResourceNotFoundException when that username is not found in database
    */
+  @Transactional(readOnly = true)
   public ProfileResponseDto profile(Authentication authentication) {
     Objects.requireNonNull(
       authentication,
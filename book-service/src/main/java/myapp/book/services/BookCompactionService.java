@@ -0,0 +1,93 @@
+/**
+ * This is the background compaction of the deleted books.
+ * A book deleted long ago is moved from the book table to the archive
+ * table, batch by batch with one transaction per batch, so the book
+ * table and its indexes only grow with the live catalog.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import myapp.book.caches.BookSearchCache;
+import myapp.book.exceptions.DatabaseException;
+import myapp.book.indexes.BookIndex;
+import myapp.book.repositories.BookRepository;
+
+@Service
+public class BookCompactionService {
+
+  @Autowired
+  private BookRepository bookRepo;
+
+  @Autowired
+  private BookIndex bookIndex;
+
+  @Autowired
+  private BookSearchCache searchCache;
+
+  @Value("${book.compaction.enabled:true}")
+  private boolean enabled;
+
+  @Value("${book.compaction.retention:30d}")
+  private Duration retention;
+
+  @Value("${book.compaction.batch-size:500}")
+  private int batchSize;
+
+  private final Logger logger = LoggerFactory.getLogger(BookCompactionService.class);
+
+  /**
+   * Archive the books deleted for longer than the retention.
+   */
+  @Scheduled(fixedDelayString = "${book.compaction.interval-ms:3600000}",
+      initialDelayString = "${book.compaction.interval-ms:3600000}")
+  public void compact() {
+    if (enabled) {
+      archive(Instant.now().minus(retention));
+    }
+  }
+
+  /**
+   * Archive the books deleted before the given time.
+   *
+   * @param deletedBefore only the books deleted before that time are archived
+   * @return int the number of archived books
+   * @throws DatabaseException when error from database
+   */
+  public int archive(Instant deletedBefore) {
+
+    logger.info("started archiving the books deleted before {}", deletedBefore);
+
+    int count = 0;
+    List<Integer> ids;
+    do {
+      try {
+        ids = bookRepo.archiveDeleted(deletedBefore, batchSize);
+      } catch (Exception e) {
+        throw new DatabaseException(e);
+      }
+      for (Integer id : ids) {
+        bookIndex.remove(id);
+      }
+      // the archived books were counted by the searches including the
+      // deleted books, in their totals and DELETED facets too
+      if (!ids.isEmpty()) {
+        searchCache.invalidateAll();
+      }
+      count += ids.size();
+    } while (ids.size() == batchSize);
+
+    logger.info("done archiving {} deleted books", count);
+
+    return count;
+  }
+}
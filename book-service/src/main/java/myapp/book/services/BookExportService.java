@@ -0,0 +1,115 @@
+/**
+ * This is the export of the whole catalog.
+ * The books are written to the output one at a time as they come from
+ * the database cursor, so nothing is paged or held in memory. A slow
+ * client blocks the writes, which in turn holds back the next fetch.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.services;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import myapp.book.entities.Book;
+import myapp.book.exceptions.DatabaseException;
+import myapp.book.repositories.BookRepository;
+import myapp.book.utils.CsvUtil;
+import myapp.book.utils.FormatEnum;
+
+@Service
+public class BookExportService {
+
+  private static final byte[] NEW_LINE = "\n".getBytes(StandardCharsets.UTF_8);
+
+  @Autowired
+  private BookRepository bookRepo;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${book.export.fetch-size:1000}")
+  private int fetchSize;
+
+  @Value("${book.export.buffer-size:65536}")
+  private int bufferSize;
+
+  private final Logger logger = LoggerFactory.getLogger(BookExportService.class);
+
+  /**
+   * Write all books to the output.
+   * An NDJSON export has one book per line, a CSV export has a header line
+   * then one book per line, both with the same columns as the import.
+   *
+   * @param output the output, it is not closed
+   * @param format the format of the books
+   * @throws NullPointerException when the output or format is null
+   * @throws DatabaseException    when error from database
+   * @throws IOException          when the output can not be written
+   */
+  public void export(final OutputStream output, final FormatEnum format) throws IOException {
+
+    Objects.requireNonNull(output, "the output stream must not be null");
+    Objects.requireNonNull(format, "the input format must not be null");
+
+    logger.info("started exporting books as {}", format);
+
+    BufferedOutputStream buffer = new BufferedOutputStream(output, bufferSize);
+    long[] count = { 0 };
+
+    if (format == FormatEnum.CSV) {
+      write(buffer, CsvUtil.format("id", "code", "title", "author",
+          "category", "status", "description"));
+    }
+
+    try {
+      bookRepo.forEach(fetchSize, book -> {
+        try {
+          if (format == FormatEnum.CSV) {
+            write(buffer, toCsv(book));
+          } else {
+            buffer.write(objectMapper.writeValueAsBytes(book));
+            buffer.write(NEW_LINE);
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        count[0]++;
+      });
+    } catch (UncheckedIOException e) {
+      // the client is gone, stop reading from the cursor
+      throw e.getCause();
+    } catch (Exception e) {
+      throw new DatabaseException(e);
+    }
+
+    buffer.flush();
+
+    logger.info("done exporting {} books", count[0]);
+  }
+
+  private static void write(final OutputStream output, final String line) throws IOException {
+    output.write(line.getBytes(StandardCharsets.UTF_8));
+    output.write(NEW_LINE);
+  }
+
+  private static String toCsv(final Book book) {
+    return CsvUtil.format(
+        String.valueOf(book.getId()),
+        book.getCode(),
+        book.getTitle(),
+        book.getAuthor(),
+        book.getCategory(),
+        book.getStatus(),
+        book.getDescription());
+  }
+}
@@ -0,0 +1,295 @@
+/**
+ * This is the bulk import of books.
+ * The records are read one line at a time, validated, and inserted
+ * chunk by chunk as one JDBC batch per chunk, with the ids taken from
+ * the book sequence in one round trip. When a chunk fails, its rows are
+ * inserted one by one to find the failing ones, so a bad row never
+ * stops the import and every failure is reported with its line.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import myapp.book.caches.BookSearchCache;
+import myapp.book.dto.book.BookCreateRequestDto;
+import myapp.book.dto.book.BookImportErrorDto;
+import myapp.book.dto.book.BookImportResultDto;
+import myapp.book.entities.Book;
+import myapp.book.entities.Book.STATUS;
+import myapp.book.exceptions.DatabaseException;
+import myapp.book.exceptions.ValidationException;
+import myapp.book.indexes.BookIndex;
+import myapp.book.repositories.BookRepository;
+import myapp.book.utils.CsvUtil;
+import myapp.book.utils.FormatEnum;
+import myapp.book.utils.ValidationUtil;
+
+@Service
+public class BookImportService {
+
+  /**
+   * This is one valid record and its line.
+   */
+  private static class Row {
+    private final long line;
+    private final Book book;
+
+    private Row(long line, Book book) {
+      this.line = line;
+      this.book = book;
+    }
+  }
+
+  @Autowired
+  private BookRepository bookRepo;
+
+  @Autowired
+  private BookIndex bookIndex;
+
+  @Autowired
+  private BookSearchCache searchCache;
+
+  @Autowired
+  private Validator validator;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private final TransactionTemplate transactionTemplate;
+
+  @Value("${book.import.chunk-size:1000}")
+  private int chunkSize;
+
+  @Value("${book.import.max-errors:1000}")
+  private int maxErrors;
+
+  private final Logger logger = LoggerFactory.getLogger(BookImportService.class);
+
+  public BookImportService(PlatformTransactionManager transactionManager) {
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  /**
+   * Import the books of a stream.
+   * An NDJSON stream has one book create request per line.
+   * A CSV stream has a header line naming the columns, then one book per line.
+   *
+   * @param input  the stream of records
+   * @param format the format of the records
+   * @return BookImportResultDto the counts and the errors per line
+   * @throws NullPointerException when the input or format is null
+   * @throws ValidationException  when the CSV header is not valid
+   * @throws DatabaseException    when error from database
+   * @throws IOException          when the stream can not be read
+   */
+  public BookImportResultDto importBooks(final InputStream input, final FormatEnum format)
+      throws IOException {
+
+    Objects.requireNonNull(input, "the input stream must not be null");
+    Objects.requireNonNull(format, "the input format must not be null");
+
+    logger.info("started importing books from {}", format);
+
+    BookImportResultDto result = new BookImportResultDto();
+    List<Row> chunk = new ArrayList<>(chunkSize);
+
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(input, StandardCharsets.UTF_8))) {
+
+      long lineNumber = 0;
+      long nextLine = 1;
+      Map<String, Integer> header = null;
+      if (format == FormatEnum.CSV) {
+        String line = CsvUtil.readRecord(reader, ValidationUtil.MAX_LEN_RECORD);
+        nextLine += lines(line);
+        header = parseHeader(line);
+      }
+
+      String line;
+      while ((line = format == FormatEnum.CSV
+          ? CsvUtil.readRecord(reader, ValidationUtil.MAX_LEN_RECORD)
+          : reader.readLine()) != null) {
+        // a CSV record is reported at its first line
+        lineNumber = nextLine;
+        nextLine += lines(line);
+        if (line.isBlank()) {
+          continue;
+        }
+        result.setTotal(result.getTotal() + 1);
+
+        BookCreateRequestDto requestDto;
+        try {
+          requestDto = format == FormatEnum.CSV
+              ? fromCsv(CsvUtil.parse(line), header)
+              : objectMapper.readValue(line, BookCreateRequestDto.class);
+        } catch (Exception e) {
+          error(result, lineNumber, null, "unreadable record: " + e.getMessage());
+          continue;
+        }
+
+        Set<ConstraintViolation<BookCreateRequestDto>> violations =
+            validator.validate(requestDto);
+        if (!violations.isEmpty()) {
+          error(result, lineNumber, requestDto.getCode(), violations.stream()
+              .map(v -> v.getPropertyPath() + " " + v.getMessage())
+              .sorted()
+              .collect(Collectors.joining(", ")));
+          continue;
+        }
+
+        chunk.add(new Row(lineNumber, toBook(requestDto)));
+        if (chunk.size() >= chunkSize) {
+          flush(chunk, result);
+          chunk.clear();
+        }
+      }
+    }
+
+    flush(chunk, result);
+
+    logger.info("done importing {} of {} books", result.getImported(), result.getTotal());
+
+    return result;
+  }
+
+  /**
+   * Insert a chunk of valid rows.
+   */
+  private void flush(final List<Row> rows, final BookImportResultDto result) {
+    if (rows.isEmpty()) {
+      return;
+    }
+
+    List<Book> books = new ArrayList<>(rows.size());
+    try {
+      List<Integer> ids = bookRepo.allocateIds(rows.size());
+      for (int i = 0; i < rows.size(); i++) {
+        Book book = rows.get(i).book;
+        book.setId(ids.get(i));
+        books.add(book);
+      }
+    } catch (Exception e) {
+      throw new DatabaseException(e);
+    }
+
+    List<Book> inserted = new ArrayList<>(rows.size());
+    try {
+      int[] counts = transactionTemplate.execute(status -> bookRepo.insertAll(books));
+      for (int i = 0; i < rows.size(); i++) {
+        collect(rows.get(i), counts[i], inserted, result);
+      }
+    } catch (DataAccessException e) {
+      logger.debug("chunk failed, inserting its {} rows one by one: {}",
+          rows.size(), e.getMostSpecificCause().getMessage());
+      for (Row row : rows) {
+        try {
+          int[] counts = transactionTemplate.execute(
+              status -> bookRepo.insertAll(List.of(row.book)));
+          collect(row, counts[0], inserted, result);
+        } catch (DataAccessException rowException) {
+          error(result, row.line, row.book.getCode(),
+              rowException.getMostSpecificCause().getMessage());
+        }
+      }
+    }
+
+    if (!inserted.isEmpty()) {
+      bookIndex.putAll(inserted);
+      searchCache.invalidateAll();
+    }
+
+    logger.debug("imported {} of a chunk of {} books", inserted.size(), rows.size());
+  }
+
+  private void collect(final Row row, final int count, final List<Book> inserted,
+      final BookImportResultDto result) {
+    if (count == 0) {
+      error(result, row.line, row.book.getCode(),
+          String.format("book code = %s is already taken", row.book.getCode()));
+    } else {
+      inserted.add(row.book);
+      result.setImported(result.getImported() + 1);
+    }
+  }
+
+  private void error(final BookImportResultDto result, final long line,
+      final String code, final String message) {
+    result.setFailed(result.getFailed() + 1);
+    if (result.getErrors().size() < maxErrors) {
+      result.getErrors().add(new BookImportErrorDto(line, code, message));
+    }
+  }
+
+  private static long lines(final String record) {
+    return record == null ? 0 : 1 + record.chars().filter(c -> c == '\n').count();
+  }
+
+  private static Map<String, Integer> parseHeader(final String line) {
+    if (line == null) {
+      throw new ValidationException("the CSV header is missing");
+    }
+    Map<String, Integer> header = new HashMap<>();
+    List<String> names = CsvUtil.parse(line);
+    for (int i = 0; i < names.size(); i++) {
+      header.put(names.get(i).trim().toLowerCase(), i);
+    }
+    if (!header.containsKey("code")) {
+      throw new ValidationException("the CSV header must have the code column");
+    }
+    return header;
+  }
+
+  private static BookCreateRequestDto fromCsv(final List<String> values,
+      final Map<String, Integer> header) {
+    BookCreateRequestDto requestDto = new BookCreateRequestDto();
+    requestDto.setCode(valueOf(values, header, "code"));
+    requestDto.setTitle(valueOf(values, header, "title"));
+    requestDto.setAuthor(valueOf(values, header, "author"));
+    requestDto.setCategory(valueOf(values, header, "category"));
+    requestDto.setStatus(valueOf(values, header, "status"));
+    requestDto.setDescription(valueOf(values, header, "description"));
+    return requestDto;
+  }
+
+  private static String valueOf(final List<String> values,
+      final Map<String, Integer> header, final String column) {
+    Integer index = header.get(column);
+    if (index == null || index >= values.size() || values.get(index).isEmpty()) {
+      return null;
+    }
+    return values.get(index);
+  }
+
+  private static Book toBook(final BookCreateRequestDto requestDto) {
+    return new Book(
+        requestDto.getCode(),
+        requestDto.getTitle(),
+        requestDto.getAuthor(),
+        requestDto.getCategory(),
+        requestDto.getStatus() == null ? STATUS.GOOD.name() : requestDto.getStatus(),
+        requestDto.getDescription());
+  }
+}
@@ -5,25 +5,46 @@
  */
 package myapp.book.services;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import myapp.book.caches.BookSearchCache;
+import myapp.book.dto.FilterDto;
 import myapp.book.dto.PaginationDto;
 import myapp.book.dto.SearchDto;
+import myapp.book.dto.book.BookBatchItemDto;
+import myapp.book.dto.book.BookSuggestionDto;
+import myapp.book.dto.book.BookSummaryDto;
+import myapp.book.dto.book.BookVersionDto;
 import myapp.book.entities.*;
 import myapp.book.entities.Book.STATUS;
 import myapp.book.exceptions.DatabaseException;
 import myapp.book.exceptions.ResourceDuplicatedException;
 import myapp.book.exceptions.ResourceNotFoundException;
 import myapp.book.exceptions.ValidationException;
+import myapp.book.indexes.BookIndex;
+import myapp.book.indexes.IndexedBook;
 import myapp.book.repositories.BookRepository;
+import myapp.book.repositories.BookRepositoryCustom;
 import myapp.book.specifications.BookSpecification;
+import myapp.book.utils.CursorUtil;
+import myapp.book.utils.CursorUtil.Cursor;
+import myapp.book.utils.PaginationUtil;
+import myapp.book.utils.StatusEnum;
+import myapp.book.utils.TransactionUtil;
+import myapp.book.utils.ValidationUtil;
 
 @Service
 public class BookService {
@@ -34,81 +55,422 @@ public class BookService {
   @Autowired
   private BookSpecification bookSpec;
 
+  @Autowired
+  private BookIndex bookIndex;
+
+  @Autowired
+  private BookSearchCache searchCache;
+
   private final Logger logger = LoggerFactory.getLogger(BookService.class);
 
   /**
    * Search for books
    *
    * @param searchDto the search request dto
-   * @return PaginationDto a pagination data
+   * @return PaginationDto a pagination data of book summaries
    * @throws NullPointerException when the input search dto is null
+   * @throws ValidationException  when the page or size is not valid, or
+   *                              a fuzzy search is given a cursor
    * @throws DatabaseException    when error from database
    */
-  public PaginationDto<Book> search(final SearchDto searchDto) {
+  @Transactional(readOnly = true)
+  public PaginationDto<BookSummaryDto> search(final SearchDto searchDto) {
 
     Objects.requireNonNull(searchDto, "the input search dto must not be null");
 
     logger.debug("search dto = {}", searchDto);
 
-    PageRequest pageRequest = PageRequest.of(searchDto.getPage() - 1, 
-      searchDto.getSize());
-    Page<Book> result = Page.empty();
+    // the page and size set the offset and the buffers of the ranking
+    ValidationUtil.validateRange("page", searchDto.getPage(), 1, ValidationUtil.MAX_PAGE);
+    ValidationUtil.validateRange("size", searchDto.getSize(), 1, ValidationUtil.MAX_PAGE_SIZE);
+
+    // typos are only matched by the index, which has no cursor
+    if (searchDto.isFuzzy() && searchDto.getCursor() != null) {
+      throw new ValidationException("the fuzzy search can not be walked by cursor");
+    }
+
+    // walk by cursor instead of offset
+    if (searchDto.getCursor() != null) {
+      return searchAfter(searchDto);
+    }
+
+    // serve the same search from cache
+    BookSearchCache.Key key = searchCache.keyOf(searchDto);
+    PaginationDto<BookSummaryDto> cached = searchCache.get(key);
+    if (cached != null) {
+      logger.debug("search result dto from cache = {}", cached);
+      return cached;
+    }
+    long generation = searchCache.generation();
+
+    PaginationDto<BookSummaryDto> data;
+
+    // keywords are looked up in the index instead of scanning the table,
+    // a fuzzy search is exact until the index is built, the database
+    // matches the terms by the start of a word like the index
+    if (BookSpecification.RELEVANCE.equals(searchDto.getSort())) {
+      data = searchRelevant(searchDto);
+    } else if (bookIndex.isReady() &&
+        bookIndex.canSortBy(searchDto.getSort()) &&
+        !BookIndex.tokenize(searchDto.getSearch()).isEmpty()) {
+      data = searchIndex(searchDto);
+    } else {
+      data = searchDatabase(searchDto);
+    }
+
+    searchCache.put(key, generation, data);
+
+    return data;
+  }
+
+  /**
+   * Filter books by exact values, the newest first
+   *
+   * @param filterDto the filter request dto
+   * @return PaginationDto a pagination data of book summaries
+   * @throws NullPointerException when the input filter dto is null
+   * @throws ValidationException  when the page or size is not valid, or
+   *                              no column is filtered
+   * @throws DatabaseException    when error from database
+   */
+  @Transactional(readOnly = true)
+  public PaginationDto<BookSummaryDto> filter(final FilterDto filterDto) {
+
+    Objects.requireNonNull(filterDto, "the input filter dto must not be null");
+
+    logger.debug("filter dto = {}", filterDto);
+
+    ValidationUtil.validateRange("page", filterDto.getPage(), 1, ValidationUtil.MAX_PAGE);
+    ValidationUtil.validateRange("size", filterDto.getSize(), 1, ValidationUtil.MAX_PAGE_SIZE);
+
+    Map<String, String> filters = new HashMap<>();
+    if (filterDto.getCode() != null) {
+      filters.put(BookIndex.FILTER_CODE, filterDto.getCode());
+    }
+    if (filterDto.getCategory() != null) {
+      filters.put(BookIndex.FACET_CATEGORY, filterDto.getCategory());
+    }
+    if (filterDto.getStatus() != null) {
+      filters.put(BookIndex.FACET_STATUS, filterDto.getStatus());
+    }
+    if (filterDto.getAuthor() != null) {
+      filters.put(BookIndex.FILTER_AUTHOR, filterDto.getAuthor());
+    }
+    if (filters.isEmpty()) {
+      throw new ValidationException(
+          "at least one of code, category, status, author must be filtered");
+    }
+
+    int size = filterDto.getSize();
+    int offset = (filterDto.getPage() - 1) * size;
+    List<BookSummaryDto> books = new ArrayList<>(size);
+    long totalSize;
+    Map<String, Map<String, Integer>> facets = null;
+
+    // the bitmaps of the index are intersected instead of querying
+    if (bookIndex.isReady()) {
+      BookIndex.Hits hits = bookIndex.filter(filters, offset, size);
+      for (IndexedBook book : hits.getBooks()) {
+        books.add(book.toSummary());
+      }
+      totalSize = hits.getTotal();
+      facets = bookIndex.facets(hits.getIds());
+    } else {
+      try {
+        Specification<Book> spec = bookSpec.filter(filterDto);
+        books = bookRepo.findSummaries(spec, offset, size);
+        if (offset == 0 && books.size() < size) {
+          totalSize = books.size();
+        } else {
+          totalSize = bookRepo.count(spec);
+        }
+      } catch (Exception e) {
+        throw new DatabaseException(e);
+      }
+    }
+
+    PaginationDto<BookSummaryDto> data = new PaginationDto<>(
+        filterDto.getPage(),
+        books.size(),
+        (int) ((totalSize + size - 1) / size),
+        totalSize,
+        books);
+    data.setFacets(facets);
+
+    logger.debug("filter result dto = {}", data);
+
+    return data;
+  }
+
+  /**
+   * Suggest the titles and authors starting with the prefix
+   *
+   * @param prefix a prefix typed so far
+   * @param size   the maximum number of suggestions
+   * @return List the suggestions, the most popular first,
+   *         empty until the index is built
+   * @throws NullPointerException when the input prefix is null
+   * @throws ValidationException  when the prefix or size is not valid
+   */
+  public List<BookSuggestionDto> suggest(final String prefix, final int size) {
+
+    Objects.requireNonNull(prefix, "the input prefix must not be null");
+
+    ValidationUtil.validateSize("prefix", prefix.trim(), 1, ValidationUtil.MAX_LEN_PREFIX);
+    if (size < 1 || size > ValidationUtil.MAX_SUGGESTIONS) {
+      throw new ValidationException(String.format(
+          "size is not in range [1, %d]", ValidationUtil.MAX_SUGGESTIONS));
+    }
+
+    if (!bookIndex.isReady()) {
+      logger.debug("the book index is not ready, no suggestion for prefix = {}", prefix);
+      return List.of();
+    }
+
+    List<BookSuggestionDto> suggestions = bookIndex.suggest(prefix, size);
+
+    logger.debug("suggestions for prefix = {} are {}", prefix, suggestions);
+
+    return suggestions;
+  }
+
+  /**
+   * Search for books in database page by page.
+   * The count is skipped when the first page is not full.
+   *
+   * @param searchDto the search request dto
+   * @return PaginationDto a pagination data of book summaries
+   * @throws DatabaseException when error from database
+   */
+  private PaginationDto<BookSummaryDto> searchDatabase(final SearchDto searchDto) {
+
+    int size = searchDto.getSize();
+    int offset = (searchDto.getPage() - 1) * size;
+    List<BookSummaryDto> books;
+    long totalSize;
 
     // search
     try {
       Specification<Book> spec = bookSpec.search(searchDto);
-      result = bookRepo.findAll(spec, pageRequest);
+      books = bookRepo.findSummaries(spec, offset, size);
+      if (offset == 0 && books.size() < size) {
+        totalSize = books.size();
+      } else {
+        totalSize = bookRepo.count(spec);
+      }
     } catch (Exception e) {
       throw new DatabaseException(e);
     }
 
     // build data
-    PaginationDto<Book> data = new PaginationDto<>(
-        result.getNumber() + 1,
-        result.getContent().size(),
-        result.getTotalPages(),
-        result.getTotalElements(),
-        result.getContent());
+    PaginationDto<BookSummaryDto> data = new PaginationDto<>(
+        searchDto.getPage(),
+        books.size(),
+        (int) ((totalSize + size - 1) / size),
+        totalSize,
+        books);
+
+    // without keyword the hits are all books, counted by the index
+    if (searchDto.getSearch().isEmpty() && bookIndex.isReady()) {
+      data.setFacets(bookIndex.facets(searchDto.isIncludeDeleted()));
+    }
 
     logger.debug("search result dto = {}", data);
 
     return data;
   }
 
+  /**
+   * Search for books page by page with a cursor.
+   * One more book than the page size is fetched to know if there is
+   * a next page, and the total is only counted when asked.
+   *
+   * @param searchDto the search request dto
+   * @return PaginationDto a pagination data with the next cursor
+   * @throws ValidationException when the cursor is not valid
+   * @throws DatabaseException   when error from database
+   */
+  private PaginationDto<BookSummaryDto> searchAfter(final SearchDto searchDto) {
+
+    Cursor cursor = CursorUtil.decode(searchDto.getCursor(),
+        searchDto.getSort(), searchDto.getOrder());
+    Specification<Book> spec = bookSpec.searchAfter(searchDto, cursor);
+
+    int size = searchDto.getSize();
+    List<BookSummaryDto> books;
+    long totalSize = PaginationUtil.UNKNOWN;
+
+    try {
+      books = bookRepo.findSummaries(spec, 0, size + 1);
+      if (searchDto.isCount()) {
+        totalSize = bookRepo.count(bookSpec.search(searchDto));
+      }
+    } catch (Exception e) {
+      throw new DatabaseException(e);
+    }
+
+    String nextCursor = null;
+    if (books.size() > size) {
+      books = new ArrayList<>(books.subList(0, size));
+      BookSummaryDto last = books.get(size - 1);
+      nextCursor = CursorUtil.encode(new Cursor(
+          searchDto.getSort(),
+          searchDto.getOrder(),
+          last.getId(),
+          sortValueOf(last, searchDto.getSort())));
+    }
+
+    PaginationDto<BookSummaryDto> data = new PaginationDto<>(
+        PaginationUtil.UNKNOWN,
+        books.size(),
+        totalSize == PaginationUtil.UNKNOWN
+            ? PaginationUtil.UNKNOWN
+            : (int) ((totalSize + size - 1) / size),
+        totalSize,
+        books,
+        nextCursor);
+
+    logger.debug("cursor search result dto = {}", data);
+
+    return data;
+  }
+
+  /**
+   * Get the value of the column used as a cursor.
+   */
+  private String sortValueOf(final BookSummaryDto book, final String sort) {
+    switch (sort) {
+      case "code":
+        return book.getCode();
+      case "title":
+        return book.getTitle();
+      case "author":
+        return book.getAuthor();
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Search for the most relevant books with the in-memory index.
+   * Only the books up to the requested page are ranked, the order is
+   * always the best first. Without any term to score, or until the index
+   * is built, the newest books come first instead.
+   *
+   * @param searchDto the search request dto
+   * @return PaginationDto a pagination data of book summaries
+   */
+  private PaginationDto<BookSummaryDto> searchRelevant(final SearchDto searchDto) {
+
+    if (!bookIndex.isReady() || BookIndex.tokenize(searchDto.getSearch()).isEmpty()) {
+      SearchDto newest = new SearchDto();
+      newest.setSearch(searchDto.getSearch());
+      newest.setPage(searchDto.getPage());
+      newest.setSize(searchDto.getSize());
+      newest.setSort("id");
+      newest.setOrder(PaginationUtil.ORDER.desc);
+      newest.setIncludeDeleted(searchDto.isIncludeDeleted());
+      return searchDatabase(newest);
+    }
+
+    int size = searchDto.getSize();
+    int from = (searchDto.getPage() - 1) * size;
+    BookIndex.Hits hits = bookIndex.searchRelevant(searchDto.getSearch(),
+        searchDto.isFuzzy(), searchDto.isIncludeDeleted(), from + size);
+
+    List<IndexedBook> top = hits.getBooks();
+    List<BookSummaryDto> books = new ArrayList<>(size);
+    for (IndexedBook book : top.subList(Math.min(from, top.size()), top.size())) {
+      books.add(book.toSummary());
+    }
+
+    PaginationDto<BookSummaryDto> data = new PaginationDto<>(
+        searchDto.getPage(),
+        books.size(),
+        (hits.getTotal() + size - 1) / size,
+        hits.getTotal(),
+        books);
+    data.setFacets(bookIndex.facets(hits.getIds()));
+
+    logger.debug("relevance search result dto = {}", data);
+
+    return data;
+  }
+
+  /**
+   * Search for books with the in-memory index.
+   * The index has every column of a summary, so there is no query.
+   *
+   * @param searchDto the search request dto
+   * @return PaginationDto a pagination data of book summaries
+   */
+  private PaginationDto<BookSummaryDto> searchIndex(final SearchDto searchDto) {
+
+    int size = searchDto.getSize();
+    int from = (searchDto.getPage() - 1) * size;
+    BookIndex.Hits hits = bookIndex.search(searchDto.getSearch(),
+        searchDto.getSort(), searchDto.getOrder(), searchDto.isFuzzy(),
+        searchDto.isIncludeDeleted(), from + size);
+
+    List<IndexedBook> top = hits.getBooks();
+    List<BookSummaryDto> books = new ArrayList<>(size);
+    for (IndexedBook book : top.subList(Math.min(from, top.size()), top.size())) {
+      books.add(book.toSummary());
+    }
+
+    PaginationDto<BookSummaryDto> data = new PaginationDto<>(
+        searchDto.getPage(),
+        books.size(),
+        (hits.getTotal() + size - 1) / size,
+        hits.getTotal(),
+        books);
+    data.setFacets(bookIndex.facets(hits.getIds()));
+
+    logger.debug("index search result dto = {}", data);
+
+    return data;
+  }
+
   /**
    * Create a book
    * 
    * @param book a book to create
    * @return Book a book just created
    * @throws NullPointerException when the input request dto is null
-   * @throws ValidationException  when the code is already taken
-   * @throws DatabaseException    when error from database
+   * @throws ResourceDuplicatedException when the code is already taken
+   * @throws DatabaseException           when error from database
    */
+  @Transactional
   public Book create(final Book book) {
 
     Objects.requireNonNull(book, "the input object must not be null");
 
     logger.debug("want to create a new book = {}", book);
 
-    if (bookRepo.existsByCode(book.getCode())) {
-      throw new ResourceDuplicatedException(
-          String.format("book code = %s is already taken", book.getCode()));
-    }
-
     // make sure that the status is getting the default value
     if (book.getStatus() == null) {
       book.setStatus(STATUS.GOOD.name());
     }
 
-    Book newBook;
+    Optional<Book> optionalOfBook;
 
-    // save new object
+    // insert unless the code is taken, in one round trip
     try {
-      newBook = bookRepo.save(book);
+      optionalOfBook = bookRepo.insertIfAbsent(book);
     } catch (Exception e) {
       throw new DatabaseException(e);
     }
 
+    Book newBook = optionalOfBook.orElseThrow(() -> new ResourceDuplicatedException(
+        String.format("book code = %s is already taken", book.getCode())));
+
+    // a search before the commit still reads the old rows, so the index
+    // and cache are only changed once they are committed
+    TransactionUtil.afterCommit(() -> {
+      bookIndex.put(newBook);
+      searchCache.invalidate(newBook.getId(), null, newBook);
+    });
+
     logger.debug("book just created = {}", newBook);
 
     return newBook;
@@ -123,6 +485,7 @@ public class BookService {
    * @throws ResourceNotFoundException when the resource is found
    * @throws DatabaseException when error from database
    */
+  @Transactional(readOnly = true)
   public Book detail(final int id) {
 
     if (id <= 0) {
@@ -155,112 +518,138 @@ public class BookService {
   }
 
   /**
-   * Update the book
+   * Fetch the version of a book without loading it
    *
-   * @param id   an id of a book
-   * @param book a new values
-   * @return Book an updated book
-   * @throws NullPointerException      when the given newBook is null
-   * @throws IllegalArgumentException  when the given book id is negative
+   * @param id an id
+   * @return BookVersionDto the version of the book
+   * @throws IllegalArgumentException  when the given id is negative
+   * @throws ResourceNotFoundException when the book is not found
    * @throws DatabaseException         when error from database
-   * @throws ResourceNotFoundException when there is no book by the given id
    */
-  public Book update(final int id, final Book newBook) {
-
-    Objects.requireNonNull(newBook, "the input book must not be null");
+  @Transactional(readOnly = true)
+  public BookVersionDto version(final int id) {
 
     if (id <= 0) {
       throw new IllegalArgumentException(
           "the input book id must not be zero or negative");
     }
 
-    logger.debug("wanted to update book id = {} with values = {}", 
-      id, newBook);
-
-    // find it
-    Optional<Book> optionalOfBook = Optional.empty();
+    Optional<BookVersionDto> optionalOfVersion;
     try {
-      optionalOfBook = bookRepo.findById(id);
+      optionalOfVersion = bookRepo.findVersionById(id);
     } catch (Exception e) {
       throw new DatabaseException(e);
     }
 
-    if (optionalOfBook.isEmpty()) {
-      throw new ResourceNotFoundException(
-          String.format("book id = %d is not found", id));
-    }
+    BookVersionDto version = optionalOfVersion
+        .orElseThrow(() -> new ResourceNotFoundException(
+            String.format("book id = %d is not found", id)));
 
-    Book book = optionalOfBook.get();
+    logger.debug("found book version = {}", version);
 
-    // update code if given
-    String newCode = newBook.getCode();
-    if (newCode != null && !newCode.isEmpty()) {
+    return version;
+  }
 
-      // new code must not be the same as the old code used by other books
-      Optional<Book> optionalOfAnotherBook = bookRepo.findByCodeAndIdNot(
-          book.getCode(), id);
+  /**
+   * Fetch the details of many books with one query.
+   * The items follow the order of the given ids, and a missing book
+   * is reported in its own item instead of failing the whole batch.
+   *
+   * @param ids the ids of the books
+   * @return List one item per given id
+   * @throws NullPointerException when the given ids is null
+   * @throws ValidationException  when there are too many ids
+   * @throws DatabaseException    when error from database
+   */
+  @Transactional(readOnly = true)
+  public List<BookBatchItemDto> detail(final List<Integer> ids) {
 
-      if (optionalOfAnotherBook.isPresent()) {
-        Book foundBook = optionalOfBook.get();
-        throw new ResourceDuplicatedException(
-            String.format(
-                "code = %s was already taken by book id = %d",
-                foundBook.getCode(),
-                foundBook.getId()));
-      }
-      
-      // now it is ok to set a new code
-      book.setCode(newCode);
-    }
+    Objects.requireNonNull(ids, "the input ids must not be null");
 
-    // update title if it is given and it is new value.
-    String newTitle = newBook.getTitle();
-    if ((newTitle != null) && 
-      (!newTitle.isEmpty()) &&
-      (Objects.equals(newTitle, book.getTitle()))) {
-      book.setTitle(newTitle);
+    if (ids.size() > ValidationUtil.MAX_BATCH_SIZE) {
+      throw new ValidationException(String.format(
+          "at most %d books can be fetched at once", ValidationUtil.MAX_BATCH_SIZE));
     }
 
-    // update author if it is given and it is new value.
-    String newAuthor = newBook.getAuthor();
-    if ((newAuthor != null) && 
-        (!newAuthor.isEmpty()) &&
-        (Objects.equals(newAuthor, book.getAuthor()))) {
-      book.setAuthor(newAuthor);
-    }
+    logger.debug("want to fetch book ids = {}", ids);
 
-    // update category if it is given and it is new value
-    String newCategory = newBook.getCategory();
-    if ((newCategory != null) &&
-        (!newCategory.isEmpty()) &&
-        (Objects.equals(newCategory, book.getCategory()))) {
-      book.setCategory(newCategory);
+    Set<Integer> validIds = new LinkedHashSet<>();
+    for (Integer id : ids) {
+      if (id != null && id > 0) {
+        validIds.add(id);
+      }
     }
 
-    // update description if given
-    String newDesc = newBook.getDescription();
-    if (newDesc != null && !newDesc.isEmpty()) {
-      book.setDescription(newDesc);
+    Map<Integer, Book> found = new HashMap<>();
+    if (!validIds.isEmpty()) {
+      try {
+        for (Book book : bookRepo.findAllById(validIds)) {
+          found.put(book.getId(), book);
+        }
+      } catch (Exception e) {
+        throw new DatabaseException(e);
+      }
     }
 
-    // update status
-    String status = newBook.getStatus();
-    if (status != null && !status.isEmpty()) {
-      book.setStatus(status);
+    List<BookBatchItemDto> items = new ArrayList<>(ids.size());
+    for (Integer id : ids) {
+      if (id == null || id <= 0) {
+        items.add(new BookBatchItemDto(id == null ? 0 : id,
+            StatusEnum.ERROR_VALIDATION.getValue(),
+            "the book id must not be zero or negative", null));
+      } else if (!found.containsKey(id)) {
+        items.add(new BookBatchItemDto(id,
+            StatusEnum.ERROR_RESOURCE_NOT_FOUND.getValue(),
+            String.format("book id = %d is not found", id), null));
+      } else {
+        items.add(new BookBatchItemDto(id,
+            StatusEnum.STATUS_SUCCESS.getValue(),
+            "found", found.get(id)));
+      }
     }
 
-    Book updatedBook;
+    logger.debug("found {} of {} books", found.size(), validIds.size());
 
-    // save
-    try {
-      updatedBook = bookRepo.save(book);
-    } catch (Exception e) {
-      throw new DatabaseException(e);
+    return items;
+  }
+
+  /**
+   * Update the book.
+   * Only the given columns are written, in one statement, and nothing
+   * is written when none of them is different.
+   *
+   * @param id      an id of a book
+   * @param newBook a new values, a null or empty value is not changed
+   * @return Book an updated book
+   * @throws NullPointerException        when the given newBook is null
+   * @throws IllegalArgumentException    when the given book id is negative
+   * @throws ResourceDuplicatedException when the new code is already taken
+   * @throws DatabaseException           when error from database
+   * @throws ResourceNotFoundException   when there is no book by the given id
+   */
+  @Transactional
+  public Book update(final int id, final Book newBook) {
+
+    Objects.requireNonNull(newBook, "the input book must not be null");
+
+    if (id <= 0) {
+      throw new IllegalArgumentException(
+          "the input book id must not be zero or negative");
     }
 
-    logger.debug("updated book = {}", updatedBook);
+    logger.debug("wanted to update book id = {} with values = {}", 
+      id, newBook);
+
+    // only the given values are changed
+    Book changes = new Book(
+        emptyToNull(newBook.getCode()),
+        emptyToNull(newBook.getTitle()),
+        emptyToNull(newBook.getAuthor()),
+        emptyToNull(newBook.getCategory()),
+        emptyToNull(newBook.getStatus()),
+        emptyToNull(newBook.getDescription()));
 
-    return updatedBook;
+    return write(id, changes);
   }
 
   /**
@@ -268,9 +657,11 @@ public class BookService {
    *
    * @param id an id
    * @return Book a deleted book
-   * @throws IllegalArgumentException when the given book id is negative
-   * @throws DatabaseException        when error from database
+   * @throws IllegalArgumentException  when the given book id is negative
+   * @throws ResourceNotFoundException when there is no book by the given id
+   * @throws DatabaseException         when error from database
    */
+  @Transactional
   public Book delete(final int id) {
 
     if (id <= 0) {
@@ -280,19 +671,47 @@ public class BookService {
 
     logger.debug("wanted to delete a book id = {}", id);
 
-    Book book = this.detail(id);
-    book.setStatus(STATUS.DELETED.name());
+    Book changes = new Book();
+    changes.setStatus(STATUS.DELETED.name());
 
-    Book updatedBook;
+    return write(id, changes);
+  }
+
+  /**
+   * Write the changed columns of a book and refresh the index and cache
+   * after the commit.
+   */
+  private Book write(final int id, final Book changes) {
+
+    Optional<BookRepositoryCustom.Change> optionalOfChange;
     try {
-      updatedBook = bookRepo.save(book);
+      optionalOfChange = bookRepo.updateChanged(id, changes);
+    } catch (DuplicateKeyException e) {
+      throw new ResourceDuplicatedException(
+          String.format("code = %s was already taken", changes.getCode()));
     } catch (Exception e) {
       throw new DatabaseException(e);
     }
 
-    logger.debug("deleted book = {}", updatedBook);
+    // not found, or there is nothing different to write
+    if (optionalOfChange.isEmpty()) {
+      Book book = this.detail(id);
+      logger.debug("book = {} is not changed", book);
+      return book;
+    }
+
+    BookRepositoryCustom.Change change = optionalOfChange.get();
+    TransactionUtil.afterCommit(() -> {
+      bookIndex.put(change.getAfter());
+      searchCache.invalidate(id, change.getBefore(), change.getAfter());
+    });
 
-    return updatedBook;
+    logger.debug("updated book = {}", change.getAfter());
+
+    return change.getAfter();
   }
 
+  private static String emptyToNull(final String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
 }
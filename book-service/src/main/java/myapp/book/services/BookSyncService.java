@@ -0,0 +1,139 @@
+/**
+ * This is the sync of the in-memory state between the instances.
+ * The index and the caches of books live in every instance, and a write
+ * only refreshes the ones of the instance doing it. So every instance
+ * polls the books updated and archived since its last poll, and applies
+ * the ones it does not have yet. A poll reads again a little before the
+ * last one, for the transactions which started before it but committed
+ * after it.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import myapp.book.caches.BookSearchCache;
+import myapp.book.entities.Book;
+import myapp.book.exceptions.DatabaseException;
+import myapp.book.indexes.BookIndex;
+import myapp.book.repositories.BookRepository;
+
+@Service
+public class BookSyncService {
+
+  @Autowired
+  private BookRepository bookRepo;
+
+  @Autowired
+  private BookIndex bookIndex;
+
+  @Autowired
+  private BookSearchCache searchCache;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Value("${book.sync.enabled:true}")
+  private boolean enabled;
+
+  @Value("${book.sync.overlap:60s}")
+  private Duration overlap;
+
+  @Value("${book.sync.batch-size:1000}")
+  private int batchSize;
+
+  // the database time the last poll started at
+  private Instant checkpoint;
+
+  private final Logger logger = LoggerFactory.getLogger(BookSyncService.class);
+
+  /**
+   * Start from before the index is built, so no write is missed.
+   */
+  @PostConstruct
+  public void init() {
+    checkpoint = bookRepo.currentTime();
+  }
+
+  /**
+   * Apply the books written by the other instances.
+   */
+  @Scheduled(fixedDelayString = "${book.sync.interval-ms:5000}",
+      initialDelayString = "${book.sync.interval-ms:5000}")
+  public void poll() {
+    if (enabled && bookIndex.isReady()) {
+      sync();
+    }
+  }
+
+  /**
+   * Apply the books written since the last sync.
+   * A book already in the index at that version was written by this
+   * instance or applied before, and is skipped.
+   *
+   * @return int the number of books applied
+   * @throws DatabaseException when error from database
+   */
+  public synchronized int sync() {
+
+    Instant since = checkpoint.minus(overlap);
+    int count = 0;
+
+    try {
+      Instant now = bookRepo.currentTime();
+
+      Instant updatedAt = since;
+      int id = 0;
+      List<Book> books;
+      do {
+        books = bookRepo.findChangedAfter(updatedAt, id, batchSize);
+        for (Book book : books) {
+          if (!bookIndex.has(book.getId(), book.getVersion())) {
+            bookIndex.put(book);
+            evict(book.getId());
+            count++;
+          }
+        }
+        if (!books.isEmpty()) {
+          Book last = books.get(books.size() - 1);
+          updatedAt = last.getUpdatedAt();
+          id = last.getId();
+        }
+      } while (books.size() == batchSize);
+
+      for (Integer archived : bookRepo.findArchivedSince(since)) {
+        if (bookIndex.has(archived, 0)) {
+          bookIndex.remove(archived);
+          evict(archived);
+          count++;
+        }
+      }
+
+      checkpoint = now;
+    } catch (Exception e) {
+      throw new DatabaseException(e);
+    }
+
+    // which cached pages a remote write touches is not known here
+    if (count > 0) {
+      searchCache.invalidateAll();
+      logger.info("applied {} books written by the other instances", count);
+    }
+
+    return count;
+  }
+
+  private void evict(int id) {
+    entityManagerFactory.getCache().evict(Book.class, id);
+  }
+}
@@ -5,12 +5,13 @@
  */
 package myapp.book.services;
 
-import java.util.List;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import myapp.book.entities.Book;
@@ -19,6 +20,7 @@ import myapp.book.exceptions.DatabaseException;
 import myapp.book.exceptions.ResourceNotFoundException;
 import myapp.book.exceptions.ValidationException;
 import myapp.book.repositories.UserRepository;
+import myapp.book.utils.ValidationUtil;
 
 @Service
 public class UserService {
@@ -90,6 +92,7 @@ public class UserService {
    * @throws ValidationException       when the validation has error
    * @throws DatabaseException         when error from database
    */
+  @Transactional
   public UserHoldBook hold(final int userId, final int bookId) {
 
     if (userId <= 0) {
@@ -106,32 +109,35 @@ public class UserService {
         bookId, userId);
 
     Book book = bookService.detail(bookId);
-    User user = detail(userId);
 
-    List<Book> books = user.getBooks();
+    boolean held;
 
-    // check is that user already hold that book
-    if (books.contains(book)) {
+    // check and hold in one statement
+    try {
+      held = userRepo.hold(userId, bookId, ValidationUtil.MAX_HOLD_BOOKS);
+    } catch (DuplicateKeyException e) {
       throw new ValidationException(
-          String.format("user = %s already hold book = %s", user, book));
+          String.format("user id = %d already hold book = %s", userId, book));
+    } catch (Exception e) {
+      throw new DatabaseException(e);
     }
 
-    // one user can hold maximum of 3 books
-    int count = books.size();
-    if (count >= 3) {
+    // only look for the reason when it fails
+    if (!held) {
+      if (!userRepo.existsById(userId)) {
+        throw new ResourceNotFoundException(
+            String.format("user id = %d is not found", userId));
+      }
+      if (userRepo.isHolding(userId, bookId)) {
+        throw new ValidationException(
+            String.format("user id = %d already hold book = %s", userId, book));
+      }
       throw new ValidationException(
-          String.format("user = %s already hold 3 books", user));
+          String.format("user id = %d already hold %d books",
+              userId, ValidationUtil.MAX_HOLD_BOOKS));
     }
 
-    User updatedUser;
-
-    try {
-      books.add(book);
-      updatedUser = userRepo.save(user);
-      books = updatedUser.getBooks();
-    } catch (Exception e) {
-      throw new DatabaseException(e);
-    }
+    User updatedUser = detail(userId);
 
     UserHoldBook uhb = new UserHoldBook(updatedUser, book);
 
@@ -151,6 +157,7 @@ public class UserService {
    * @throws ValidationException       when the validation has error
    * @throws DatabaseException         when error from database
    */
+  @Transactional
   public UserHoldBook unhold(final int userId, final int bookId) {
 
     if (userId <= 0) {
@@ -168,31 +175,29 @@ public class UserService {
         bookId,
         userId);
 
-    User user = userRepo
-        .findById(userId)
-        .orElseThrow(() -> new ResourceNotFoundException(
-            String.format("user id = %d is not found", userId)));
-
     Book book = bookService.detail(bookId);
 
-    List<Book> books = user.getBooks();
-
-    // check is that user never hold that book
-    if (!books.contains(book)) {
-      throw new ValidationException(
-          String.format("user = %s didn't held the book = %s", user, book));
-    }
+    boolean released;
 
-    // now it is ok to unhold
-    User updatedUser;
+    // release in one statement
     try {
-      books.remove(book);
-      updatedUser = userRepo.save(user);
-      books = updatedUser.getBooks();
+      released = userRepo.unhold(userId, bookId);
     } catch (Exception e) {
       throw new DatabaseException(e);
     }
 
+    // only look for the reason when it fails
+    if (!released) {
+      if (!userRepo.existsById(userId)) {
+        throw new ResourceNotFoundException(
+            String.format("user id = %d is not found", userId));
+      }
+      throw new ValidationException(
+          String.format("user id = %d didn't held the book = %s", userId, book));
+    }
+
+    User updatedUser = detail(userId);
+
     UserHoldBook uhb = new UserHoldBook(updatedUser, book);
 
     logger.debug("user = {} just released the book = {}",
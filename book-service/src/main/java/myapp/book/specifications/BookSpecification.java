@@ -7,52 +7,65 @@ package myapp.book.specifications;
 
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
+import myapp.book.dto.FilterDto;
 import myapp.book.dto.SearchDto;
 import myapp.book.entities.Book;
 import myapp.book.exceptions.ValidationException;
+import myapp.book.indexes.BookIndex;
+import myapp.book.utils.CursorUtil.Cursor;
 import myapp.book.utils.PaginationUtil.ORDER;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
 
 @Component
 public class BookSpecification {
 
-    public Specification<Book> search(SearchDto searchDto) {
+    public static final List<String> SORTABLES = List.of(
+        "id", "code", "title", "author", "description");
 
-        Objects.requireNonNull(searchDto, "the input search dto must not be null");
+    // scored by the index, not a column
+    public static final String RELEVANCE = "relevance";
 
-          // validate the column to sort
-          String[] sortables = new String[] { "id", "code", "title", "author", "description" };
-          if (!Arrays.asList(sortables).contains(searchDto.getSort())) {
-              throw new ValidationException(String.format(
-                  "can not sort by column = %s, correct values = %s", 
-                  searchDto.getSort(), Arrays.toString(sortables)));
-          }
+    // the columns searched for the keyword, the same as the book index
+    private static final List<String> KEYWORD_COLUMNS = List.of(
+        "category", "title", "author", "description");
 
-        return (root, query, criteriaBuilder) -> {
+    // a term starts the value or follows anything but a letter or digit
+    private static final String WORD_START = "(^|[^[:alnum:]])";
 
-            String keyword = searchDto.getSearch();
+    // the columns that are never null, so they can be used as a cursor
+    public static final List<String> CURSOR_SORTABLES = List.of(
+        "id", "code", "title", "author");
 
-            // search by category
-            Predicate searchByCategory = criteriaBuilder.like(
-                    criteriaBuilder.lower(root.get("category")),
-                    "%" + keyword.toLowerCase() + "%");
+    /**
+     * Make sure the book can be sorted by the requested column.
+     *
+     * @param sort the column to sort
+     * @throws ValidationException when the column is not sortable
+     */
+    public void validateSort(String sort) {
+        if (!SORTABLES.contains(sort)) {
+            throw new ValidationException(String.format(
+                "can not sort by column = %s, correct values = %s or %s",
+                sort, SORTABLES, RELEVANCE));
+        }
+    }
 
-            // search by title
-            Predicate searchByTitle = criteriaBuilder.like(
-                    criteriaBuilder.lower(root.get("title")),
-                    "%" + keyword.toLowerCase() + "%");
+    public Specification<Book> search(SearchDto searchDto) {
 
-            // search by author
-            Predicate searchByAuthor = criteriaBuilder.like(
-                    criteriaBuilder.lower(root.get("author")),
-                    "%" + keyword.toLowerCase() + "%");
+        Objects.requireNonNull(searchDto, "the input search dto must not be null");
 
-            // search by description
-            Predicate searchByDesc = criteriaBuilder.like(
-                    criteriaBuilder.lower(root.get("description")),
-                    "%" + keyword.toLowerCase() + "%");
+        // validate the column to sort
+        validateSort(searchDto.getSort());
+
+        return (root, query, criteriaBuilder) -> {
 
             // sort
             if (Objects.equals(searchDto.getOrder(), ORDER.desc)) {
@@ -61,7 +74,167 @@ public class BookSpecification {
                 query.orderBy(criteriaBuilder.asc(root.get(searchDto.getSort())));
             }
 
-            return criteriaBuilder.or(searchByCategory, searchByTitle, searchByAuthor, searchByDesc);
+            return criteriaBuilder.and(
+                keyword(root, criteriaBuilder, searchDto.getSearch()),
+                live(root, criteriaBuilder, searchDto.isIncludeDeleted()));
         };
     }
+
+    /**
+     * Search for the books coming after the cursor.
+     * The books are ordered by the sort column then by id, so the
+     * position of the last book is enough to find the next page
+     * without any offset.
+     *
+     * @param searchDto the search dto
+     * @param cursor    the position of the last book, null for the first page
+     * @return Specification the specification
+     * @throws NullPointerException when the input search dto is null
+     * @throws ValidationException  when the column can not be used as a cursor
+     */
+    public Specification<Book> searchAfter(SearchDto searchDto, Cursor cursor) {
+
+        Objects.requireNonNull(searchDto, "the input search dto must not be null");
+
+        // validate the column to sort
+        String sort = searchDto.getSort();
+        if (!CURSOR_SORTABLES.contains(sort)) {
+            throw new ValidationException(String.format(
+                "can not page by cursor with column = %s, correct values = %s",
+                sort, CURSOR_SORTABLES));
+        }
+
+        boolean desc = Objects.equals(searchDto.getOrder(), ORDER.desc);
+
+        return (root, query, criteriaBuilder) -> {
+
+            // sort by the column then by id to break the tie
+            if (desc) {
+                query.orderBy(
+                    criteriaBuilder.desc(root.get(sort)),
+                    criteriaBuilder.desc(root.get("id")));
+            } else {
+                query.orderBy(
+                    criteriaBuilder.asc(root.get(sort)),
+                    criteriaBuilder.asc(root.get("id")));
+            }
+
+            Predicate searchByKeyword = criteriaBuilder.and(
+                keyword(root, criteriaBuilder, searchDto.getSearch()),
+                live(root, criteriaBuilder, searchDto.isIncludeDeleted()));
+
+            if (cursor == null) {
+                return searchByKeyword;
+            }
+
+            Path<Integer> id = root.get("id");
+            Predicate after;
+
+            if (Objects.equals(sort, "id")) {
+                after = desc
+                    ? criteriaBuilder.lessThan(id, cursor.getId())
+                    : criteriaBuilder.greaterThan(id, cursor.getId());
+            } else {
+                Path<String> column = root.get(sort);
+                String value = cursor.getValue();
+                after = criteriaBuilder.or(
+                    desc
+                        ? criteriaBuilder.lessThan(column, value)
+                        : criteriaBuilder.greaterThan(column, value),
+                    criteriaBuilder.and(
+                        criteriaBuilder.equal(column, value),
+                        desc
+                            ? criteriaBuilder.lessThan(id, cursor.getId())
+                            : criteriaBuilder.greaterThan(id, cursor.getId())));
+            }
+
+            return criteriaBuilder.and(searchByKeyword, after);
+        };
+    }
+
+    /**
+     * Filter the books by exact values, the newest first.
+     * Every given column is an equality predicate, so the unique code,
+     * the author and the category with status are looked up by index.
+     *
+     * @param filterDto the filter dto
+     * @return Specification the specification
+     * @throws NullPointerException when the input filter dto is null
+     */
+    public Specification<Book> filter(FilterDto filterDto) {
+
+        Objects.requireNonNull(filterDto, "the input filter dto must not be null");
+
+        return (root, query, criteriaBuilder) -> {
+
+            query.orderBy(criteriaBuilder.desc(root.get("id")));
+
+            List<Predicate> predicates = new ArrayList<>();
+            if (filterDto.getCode() != null) {
+                predicates.add(criteriaBuilder.equal(root.get("code"), filterDto.getCode()));
+            }
+            if (filterDto.getCategory() != null) {
+                predicates.add(criteriaBuilder.equal(root.get("category"), filterDto.getCategory()));
+            }
+            if (filterDto.getStatus() != null) {
+                predicates.add(criteriaBuilder.equal(root.get("status"), filterDto.getStatus()));
+            }
+            if (filterDto.getAuthor() != null) {
+                predicates.add(criteriaBuilder.equal(root.get("author"), filterDto.getAuthor()));
+            }
+
+            return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Build the predicate to skip the deleted books.
+     * It is the same as the condition of the partial indexes on the
+     * live books, so they can be used. The condition is the formula of
+     * Book.live, a literal, a bound status could not prove it in a
+     * generic plan.
+     */
+    private Predicate live(Root<Book> root, CriteriaBuilder criteriaBuilder,
+        boolean includeDeleted) {
+
+        if (includeDeleted) {
+            return criteriaBuilder.conjunction();
+        }
+        return criteriaBuilder.isTrue(root.get("live"));
+    }
+
+    /**
+     * Build the predicate to search for the keyword, the same way as the
+     * book index. Every term of the keyword must start a word of the
+     * category, title, author or description, in any order. The LIKE of a
+     * term is there for the trigram indexes, the regular expression then
+     * keeps the books where the term is at the start of a word.
+     */
+    private Predicate keyword(Root<Book> root, CriteriaBuilder criteriaBuilder,
+        String keyword) {
+
+        // the terms are only letters and digits, there is nothing to escape
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(BookIndex.tokenize(keyword)));
+
+        // no term matches everything, like an empty keyword
+        if (terms.isEmpty()) {
+            return criteriaBuilder.conjunction();
+        }
+
+        List<Predicate> searchByTerms = new ArrayList<>();
+        for (String term : terms) {
+            List<Predicate> searchByColumns = new ArrayList<>();
+            for (String column : KEYWORD_COLUMNS) {
+                Expression<String> value = criteriaBuilder.lower(root.get(column));
+                searchByColumns.add(criteriaBuilder.and(
+                    criteriaBuilder.like(value, "%" + term + "%"),
+                    criteriaBuilder.isTrue(criteriaBuilder.function(
+                        "textregexeq", Boolean.class, value,
+                        criteriaBuilder.literal(WORD_START + term)))));
+            }
+            searchByTerms.add(criteriaBuilder.or(searchByColumns.toArray(new Predicate[0])));
+        }
+
+        return criteriaBuilder.and(searchByTerms.toArray(new Predicate[0]));
+    }
 }
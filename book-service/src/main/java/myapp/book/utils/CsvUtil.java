@@ -0,0 +1,119 @@
+package myapp.book.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import myapp.book.exceptions.ValidationException;
+
+public class CsvUtil {
+
+  /**
+   * Read one CSV record, which is many lines when a quoted value has
+   * line breaks. The lines are joined with a line feed, and the reading
+   * stops at the max length so a quote which is never closed does not
+   * swallow the rest of the input.
+   *
+   * @param reader    a reader
+   * @param maxLength the max length of a record
+   * @return String a record, null at the end of the input
+   * @throws IOException when the reader can not be read
+   */
+  public static String readRecord(BufferedReader reader, int maxLength) throws IOException {
+    String line = reader.readLine();
+    if (line == null) {
+      return null;
+    }
+    StringBuilder record = new StringBuilder(line);
+    int quotes = quotes(line);
+    while (quotes % 2 != 0 && record.length() < maxLength) {
+      line = reader.readLine();
+      if (line == null) {
+        break;
+      }
+      record.append('\n').append(line);
+      quotes += quotes(line);
+    }
+    return record.toString();
+  }
+
+  /**
+   * Split one CSV record into its values.
+   * A value can be quoted with double quotes, and a double quote inside
+   * a quoted value is written twice. A quoted value can have line breaks.
+   *
+   * @param line a record, see {@link #readRecord(BufferedReader, int)}
+   * @return List the values, an empty value is an empty string
+   * @throws ValidationException when a quote is not closed
+   */
+  public static List<String> parse(String line) {
+    List<String> values = new ArrayList<>();
+    StringBuilder value = new StringBuilder();
+    boolean quoted = false;
+    int i = 0;
+    while (i < line.length()) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          value.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          value.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        values.add(value.toString());
+        value.setLength(0);
+      } else {
+        value.append(c);
+      }
+      i++;
+    }
+    if (quoted) {
+      throw new ValidationException("a quoted value is not closed");
+    }
+    values.add(value.toString());
+    return values;
+  }
+
+  /**
+   * Write the values as one CSV record, without the line break.
+   * A null is written as an empty value, and a value with a comma, quote
+   * or line break is quoted.
+   *
+   * @param values the values
+   * @return String a line
+   */
+  public static String format(String... values) {
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        line.append(',');
+      }
+      String value = values[i];
+      if (value == null) {
+        continue;
+      }
+      if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 ||
+          value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+      } else {
+        line.append(value);
+      }
+    }
+    return line.toString();
+  }
+
+  private static int quotes(String line) {
+    int count = 0;
+    for (int i = 0; i < line.length(); i++) {
+      if (line.charAt(i) == '"') {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,84 @@
+package myapp.book.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import myapp.book.exceptions.ValidationException;
+
+public class CursorUtil {
+
+    /**
+     * This is the position of the last row of a page.
+     * The sort and order are kept so a cursor can not be reused
+     * with another ordering.
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Cursor {
+        private String sort;
+        private PaginationUtil.ORDER order;
+        private int id;
+        private String value;
+    }
+
+    /**
+     * Encode the cursor into an opaque url-safe string.
+     *
+     * @param cursor a cursor
+     * @return String the encoded cursor
+     */
+    public static String encode(Cursor cursor) {
+        Objects.requireNonNull(cursor, "the input cursor must not be null");
+        String raw = String.join(":",
+            cursor.getSort(),
+            cursor.getOrder().name(),
+            String.valueOf(cursor.getId()),
+            cursor.getValue() == null ? "" : cursor.getValue());
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode the cursor and check that it belongs to the same ordering.
+     *
+     * @param encoded an encoded cursor
+     * @param sort    the column to sort of the current request
+     * @param order   the ordering of the current request
+     * @return Cursor the cursor, null when the encoded cursor is empty
+     * @throws ValidationException when the cursor is malformed or
+     *                             does not match the ordering
+     */
+    public static Cursor decode(String encoded, String sort,
+        PaginationUtil.ORDER order) {
+
+        if (encoded == null || encoded.isEmpty()) {
+            return null;
+        }
+
+        String[] parts;
+        Cursor cursor;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded),
+                StandardCharsets.UTF_8);
+            parts = raw.split(":", 4);
+            cursor = new Cursor(parts[0], PaginationUtil.ORDER.valueOf(parts[1]),
+                Integer.parseInt(parts[2]), parts[3]);
+        } catch (RuntimeException e) {
+            throw new ValidationException(
+                String.format("the cursor = %s is malformed", encoded));
+        }
+
+        if (!Objects.equals(cursor.getSort(), sort) ||
+            !Objects.equals(cursor.getOrder(), order)) {
+            throw new ValidationException(String.format(
+                "the cursor was made for sort = %s and order = %s",
+                cursor.getSort(), cursor.getOrder()));
+        }
+
+        return cursor;
+    }
+}
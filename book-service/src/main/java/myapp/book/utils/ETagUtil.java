@@ -0,0 +1,88 @@
+package myapp.book.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import myapp.book.dto.PaginationDto;
+import myapp.book.dto.book.BookSummaryDto;
+import myapp.book.dto.book.BookVersionDto;
+import myapp.book.entities.Book;
+
+public class ETagUtil {
+
+  /**
+   * Build the ETag of a book, it changes on every update of the book.
+   *
+   * @param version a version of the book
+   * @return String a strong ETag
+   */
+  public static String of(BookVersionDto version) {
+    return String.format("\"%d-%d\"", version.getId(), version.getVersion());
+  }
+
+  /**
+   * Build the ETag of a loaded book, the same as the one of its version.
+   *
+   * @param book a book
+   * @return String a strong ETag
+   */
+  public static String of(Book book) {
+    return String.format("\"%d-%d\"", book.getId(), book.getVersion());
+  }
+
+  /**
+   * Build the ETag of a page of books out of its content,
+   * so the same page gives the same ETag without being serialized.
+   *
+   * @param data a page of books
+   * @return String a strong ETag
+   */
+  public static String of(PaginationDto<BookSummaryDto> data) {
+    MessageDigest digest = sha256();
+    update(digest, data.getPage(), data.getSize(), data.getTotalPage(),
+        data.getTotalSize(), data.getNextCursor());
+    for (BookSummaryDto book : data.getList()) {
+      update(digest, book.getId(), book.getCode(), book.getTitle(),
+          book.getAuthor(), book.getCategory(), book.getStatus());
+    }
+    return tag(digest);
+  }
+
+  /**
+   * Build the ETag of a search before running it, out of the request and
+   * the writes seen so far. It changes on every write and differs between
+   * instances, so it never stands for an older result.
+   *
+   * @param instance   the id of the instance
+   * @param generation the generation of the search cache
+   * @param key        the key of the search in the search cache
+   * @return String a strong ETag
+   */
+  public static String of(String instance, long generation, Object key) {
+    MessageDigest digest = sha256();
+    update(digest, instance, generation, key);
+    return tag(digest);
+  }
+
+  private static void update(MessageDigest digest, Object... values) {
+    for (Object value : values) {
+      digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+      // separate the values so "ab","c" and "a","bc" differ
+      digest.update((byte) 0);
+    }
+  }
+
+  private static String tag(MessageDigest digest) {
+    return "\"" + Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(digest.digest()) + "\"";
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package myapp.book.utils;
+
+/**
+ * The formats of the book import and export.
+ */
+public enum FormatEnum {
+    NDJSON,
+    CSV
+}
@@ -9,4 +9,7 @@ public class PaginationUtil {
 
   public static Integer DEFAULT_PAGE_NUMBER = 1;
   public static Integer DEFAULT_PAGE_SIZE = 10;
+
+  // used for the page and totals that are not calculated
+  public static final int UNKNOWN = -1;
 }
@@ -0,0 +1,27 @@
+package myapp.book.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionUtil {
+
+  /**
+   * Run the action once the current transaction is committed, so the
+   * other requests can not read the old row back in the meantime.
+   * Nothing runs on a rollback, and without a transaction it runs now.
+   *
+   * @param action an action
+   */
+  public static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+}
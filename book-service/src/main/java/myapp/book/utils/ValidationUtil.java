@@ -39,10 +39,24 @@ public class ValidationUtil {
     public static final int MAX_LEN_BOOK_DESCRIPTION = 1024;
 
     public static final int MAX_LEN_SEARCH = 8;
-    public static final int MAX_LEN_SORT = 8;
+    // the longest of the sortable columns and relevance
+    public static final int MAX_LEN_SORT = 16;
+    public static final int MAX_LEN_CURSOR = 512;
 
-    public static final int MAX_LEN_COLUMN = 8;
-    public static final int MAX_LEN_VALUE = 8;
+    public static final int MAX_BATCH_SIZE = 100;
+
+    // a page of search or filter results
+    public static final int MAX_PAGE = 100;
+    public static final int MAX_PAGE_SIZE = 10;
+
+    public static final int MAX_LEN_PREFIX = 64;
+    public static final int MAX_SUGGESTIONS = 10;
+
+    // one imported CSV record, all columns with their quotes
+    public static final int MAX_LEN_RECORD = 4096;
+
+    // one user can hold maximum of 3 books
+    public static final int MAX_HOLD_BOOKS = 3;
 
     /**
      * validate the size of string data.
@@ -60,4 +74,20 @@ public class ValidationUtil {
                             name, minLen, maxLen));
         }
     }
+
+    /**
+     * validate the range of number data.
+     *
+     * @param name  the name of the data
+     * @param value the value
+     * @param min   the minimum value
+     * @param max   the maximum value
+     * @throws ValidationException when the value is not in range
+     */
+    public static void validateRange(String name, int value, int min, int max) {
+        if (value < min || value > max) {
+            throw new ValidationException(
+                    String.format("%s is not in range [%d, %d]", name, min, max));
+        }
+    }
 }
@@ -0,0 +1,3 @@
+-- book version and last update, used for the ETag and Last-Modified headers
+ALTER TABLE "book" ADD COLUMN IF NOT EXISTS "version" INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE "book" ADD COLUMN IF NOT EXISTS "updated_at" TIMESTAMP(3) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP;
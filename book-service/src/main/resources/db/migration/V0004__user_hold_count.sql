@@ -0,0 +1,9 @@
+-- a user holds a book at most once
+DELETE FROM "user_hold_book" a USING "user_hold_book" b
+    WHERE a.user_id = b.user_id AND a.book_id = b.book_id AND a.id > b.id;
+ALTER TABLE "user_hold_book" ADD CONSTRAINT "user_hold_book_unique_user_book" UNIQUE("user_id", "book_id");
+
+-- number of books a user holds, the limit is checked against it in one update
+ALTER TABLE "user" ADD COLUMN IF NOT EXISTS "hold_count" INTEGER NOT NULL DEFAULT 0;
+UPDATE "user" u SET hold_count = (SELECT count(*) FROM "user_hold_book" h WHERE h.user_id = u.id);
+ALTER TABLE "user" ADD CONSTRAINT "user_hold_count_not_negative" CHECK("hold_count" >= 0);
@@ -0,0 +1,3 @@
+-- exact filters by category and status, the category alone is the leading column
+CREATE INDEX idx_book_category_status ON "book"(category, status);
+DROP INDEX IF EXISTS idx_book_category;
@@ -0,0 +1,24 @@
+-- the searches skip the deleted books, so the indexes only hold the live ones
+CREATE INDEX idx_book_live_id ON "book"(id) WHERE status <> 'DELETED';
+CREATE INDEX idx_book_live_title ON "book"(title) WHERE status <> 'DELETED';
+CREATE INDEX idx_book_live_author ON "book"(author) WHERE status <> 'DELETED';
+CREATE INDEX idx_book_live_code ON "book"(code) WHERE status <> 'DELETED';
+DROP INDEX IF EXISTS idx_book_title;
+
+-- to find the books deleted long ago
+CREATE INDEX idx_book_deleted_updated_at ON "book"(updated_at) WHERE status = 'DELETED';
+
+-- the books deleted long ago are moved here by the compaction
+CREATE TABLE IF NOT EXISTS "book_archive"(
+    "id"           INTEGER NOT NULL,
+    "code"         VARCHAR(128) NOT NULL,
+    "author"       VARCHAR(64) NOT NULL,
+    "title"        VARCHAR(64) NOT NULL,
+    "category"     VARCHAR(32) NOT NULL,
+    "status"       VARCHAR(10) NOT NULL,
+    "description"  TEXT NULL,
+    "version"      INTEGER NOT NULL,
+    "updated_at"   TIMESTAMP(3) WITH TIME ZONE NOT NULL,
+    "archived_at"  TIMESTAMP(0) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+ALTER TABLE "book_archive" ADD PRIMARY KEY("id");
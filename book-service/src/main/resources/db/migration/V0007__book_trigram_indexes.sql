@@ -0,0 +1,7 @@
+-- the keyword search is lower(column) LIKE '%keyword%' on every column joined by OR,
+-- a trigram index per expression lets it be a bitmap OR of index scans instead of a table scan
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX idx_book_trgm_category ON "book" USING gin (lower(category) gin_trgm_ops);
+CREATE INDEX idx_book_trgm_title ON "book" USING gin (lower(title) gin_trgm_ops);
+CREATE INDEX idx_book_trgm_author ON "book" USING gin (lower(author) gin_trgm_ops);
+CREATE INDEX idx_book_trgm_description ON "book" USING gin (lower(description) gin_trgm_ops);
@@ -0,0 +1,9 @@
+-- the ids are allocated by block, a sequence value is the first id of a block of 50,
+-- the increment must stay equal to book.id.allocation-size, it is checked at startup
+ALTER SEQUENCE "user_id_seq" INCREMENT BY 50;
+ALTER SEQUENCE "role_id_seq" INCREMENT BY 50;
+ALTER SEQUENCE "user_profile_id_seq" INCREMENT BY 50;
+ALTER SEQUENCE "book_id_seq" INCREMENT BY 50;
+
+-- the roles were inserted with their ids, the sequence must not give them again
+SELECT setval('role_id_seq', (SELECT MAX(id) FROM "role"));
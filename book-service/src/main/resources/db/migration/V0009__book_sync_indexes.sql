@@ -0,0 +1,3 @@
+-- the other instances read the books written since their last poll
+CREATE INDEX idx_book_updated_at_id ON "book"(updated_at, id);
+CREATE INDEX idx_book_archive_archived_at ON "book_archive"(archived_at);
@@ -0,0 +1,23 @@
+/**
+ * This is the base of the tests against a real PostgreSQL.
+ * The database is started by Testcontainers on the first connection and
+ * migrated by Flyway like in production, and the tests are skipped when
+ * there is no Docker. The background jobs are off, a test runs them itself.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "spring.datasource.url=jdbc:tc:postgresql:14.7-alpine3.17:///book_db",
+    "spring.datasource.driver-class-name=org.testcontainers.jdbc.ContainerDatabaseDriver",
+    "eureka.client.enabled=false",
+    "book.compaction.enabled=false",
+    "book.sync.enabled=false"
+})
+public abstract class PostgresTest {
+}
@@ -0,0 +1,112 @@
+package myapp.book.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.web.servlet.MockMvc;
+import myapp.book.caches.BookSearchCache;
+import myapp.book.dto.PaginationDto;
+import myapp.book.dto.SearchDto;
+import myapp.book.entities.Book;
+import myapp.book.security.JwtTokenUtil;
+import myapp.book.services.BookExportService;
+import myapp.book.services.BookImportService;
+import myapp.book.services.BookService;
+import myapp.book.utils.ETagUtil;
+
+@WebMvcTest(BookController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class BookControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockBean
+  private BookService bookService;
+
+  @MockBean
+  private BookImportService bookImportService;
+
+  @MockBean
+  private BookExportService bookExportService;
+
+  @MockBean
+  private UserDetailsService userDetailsService;
+
+  @MockBean
+  private JwtTokenUtil jwtTokenUtil;
+
+  @MockBean
+  private BookSearchCache searchCache;
+
+  @Test
+  void searchAcceptsEverySort() throws Exception {
+    when(bookService.search(any(SearchDto.class)))
+        .thenReturn(new PaginationDto<>(1, 10, 0, 0, List.of()));
+
+    for (String sort : List.of("relevance", "description", "id")) {
+      mockMvc.perform(get("/api/v1/book").param("search", "hobbit").param("sort", sort))
+          .andExpect(status().isOk());
+    }
+
+    ArgumentCaptor<SearchDto> searchDto = ArgumentCaptor.forClass(SearchDto.class);
+    verify(bookService, times(3)).search(searchDto.capture());
+    assertThat(searchDto.getAllValues()).extracting(SearchDto::getSort)
+        .containsExactly("relevance", "description", "id");
+  }
+
+  @Test
+  void searchNotModifiedSkipsTheSearch() throws Exception {
+    when(searchCache.instance()).thenReturn("instance");
+    when(searchCache.generation()).thenReturn(7L);
+    when(searchCache.keyOf(any(SearchDto.class))).thenReturn(null);
+    String etag = ETagUtil.of("instance", 7L, null);
+
+    mockMvc.perform(get("/api/v1/book").header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified());
+
+    verifyNoInteractions(bookService);
+  }
+
+  @Test
+  void detailIsLoadedOnceWithoutConditions() throws Exception {
+    Book book = new Book();
+    book.setId(1);
+    book.setVersion(3);
+    book.setUpdatedAt(Instant.parse("2023-01-01T00:00:00Z"));
+    when(bookService.detail(1)).thenReturn(book);
+
+    mockMvc.perform(get("/api/v1/book/1"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1-3\""));
+
+    verify(bookService, never()).version(anyInt());
+  }
+
+  @Test
+  void searchRejectsAnInvalidPage() throws Exception {
+    mockMvc.perform(get("/api/v1/book").param("page", "0"))
+        .andExpect(status().isBadRequest());
+
+    verifyNoInteractions(bookService);
+  }
+}
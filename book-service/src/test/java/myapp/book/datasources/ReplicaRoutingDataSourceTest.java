@@ -0,0 +1,78 @@
+package myapp.book.datasources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Map;
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+class ReplicaRoutingDataSourceTest {
+
+  private final Connection primaryConnection = mock(Connection.class);
+
+  private final Connection replicaConnection = mock(Connection.class);
+
+  private ReplicaRoutingDataSource routing;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    DataSource primary = mock(DataSource.class);
+    when(primary.getConnection()).thenReturn(primaryConnection);
+    DataSource replica = mock(DataSource.class);
+    when(replica.getConnection()).thenReturn(replicaConnection);
+
+    routing = new ReplicaRoutingDataSource(primary, Map.of("replica", replica),
+        Duration.ofSeconds(5), Duration.ofSeconds(1));
+    TransactionSynchronizationManager.setActualTransactionActive(true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    TransactionSynchronizationManager.clear();
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void aWriteSendsTheCookieOfTheWindow() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest(), response));
+
+    assertThat(routing.getConnection()).isSameAs(primaryConnection);
+
+    Cookie cookie = response.getCookie(ReplicaRoutingDataSource.COOKIE);
+    assertThat(cookie).isNotNull();
+    assertThat(Long.parseLong(cookie.getValue())).isGreaterThan(System.currentTimeMillis());
+  }
+
+  @Test
+  void theCookieOfAnotherInstanceReadsFromThePrimary() throws Exception {
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setCookies(new Cookie(ReplicaRoutingDataSource.COOKIE,
+        String.valueOf(System.currentTimeMillis() + 5000)));
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(request, new MockHttpServletResponse()));
+    assertThat(routing.getConnection()).isSameAs(primaryConnection);
+
+    request = new MockHttpServletRequest();
+    request.setCookies(new Cookie(ReplicaRoutingDataSource.COOKIE,
+        String.valueOf(System.currentTimeMillis() - 1)));
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(request, new MockHttpServletResponse()));
+    assertThat(routing.getConnection()).isSameAs(replicaConnection);
+  }
+}
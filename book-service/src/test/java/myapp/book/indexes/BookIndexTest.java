@@ -0,0 +1,185 @@
+package myapp.book.indexes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import myapp.book.entities.Book;
+import myapp.book.repositories.BookRepository;
+import myapp.book.utils.PaginationUtil.ORDER;
+
+class BookIndexTest {
+
+  private BookIndex index;
+
+  @BeforeEach
+  void build() {
+    List<Book> books = List.of(
+        book(1, "CODE-0001", "The Hobbit", "Tolkien", "NOVEL", "GOOD", "A hobbit leaves home"),
+        book(2, "CODE-0002", "The Lord of the Rings", "Tolkien", "NOVEL", "GOOD", null),
+        book(3, "CODE-0003", "Dune", "Frank Herbert", "NOVEL", "GOOD", "Spice, sand and no hobbit"),
+        book(4, "CODE-0004", "Calculus", "Spivak", "STUDY", "OLD", "Limits and derivatives"),
+        book(5, "CODE-0005", "Lost Tales", "Tolkien", "NOVEL", "DELETED", null));
+
+    // two batches of 3 books
+    BookRepository bookRepo = mock(BookRepository.class);
+    when(bookRepo.findByIdGreaterThanOrderByIdAsc(eq(0), any(Pageable.class)))
+        .thenReturn(books.subList(0, 3));
+    when(bookRepo.findByIdGreaterThanOrderByIdAsc(eq(3), any(Pageable.class)))
+        .thenReturn(books.subList(3, 5));
+
+    index = new BookIndex();
+    ReflectionTestUtils.setField(index, "bookRepo", bookRepo);
+    ReflectionTestUtils.setField(index, "batchSize", 3);
+    ReflectionTestUtils.setField(index, "maxDistance", 2);
+    ReflectionTestUtils.setField(index, "weights", new double[] { 3, 2, 1, 1 });
+    ReflectionTestUtils.setField(index, "k1", 1.2);
+    ReflectionTestUtils.setField(index, "b", 0.75);
+    index.build();
+  }
+
+  @Test
+  void buildLoadsEveryBatch() {
+    assertThat(index.isReady()).isTrue();
+    assertThat(index.has(5, 0)).isTrue();
+  }
+
+  @Test
+  void tokenizeSplitsOnAnythingButLettersAndDigits() {
+    assertThat(BookIndex.tokenize("The Lord-of the RINGS, 2nd")).containsExactly(
+        "the", "lord", "of", "the", "rings", "2nd");
+    assertThat(BookIndex.tokenize(null)).isEmpty();
+  }
+
+  @Test
+  void searchMatchesEveryTermByTheStartOfAWord() {
+    assertThat(ids(index.search("hob", "id", ORDER.asc, false, false, 10)))
+        .containsExactly(1, 3);
+    assertThat(ids(index.search("tolk rings", "id", ORDER.asc, false, false, 10)))
+        .containsExactly(2);
+    // not in the middle of a word
+    assertThat(ids(index.search("obbit", "id", ORDER.asc, false, false, 10))).isEmpty();
+  }
+
+  @Test
+  void searchSkipsTheDeletedBooksUnlessIncluded() {
+    BookIndex.Hits live = index.search("tolkien", "id", ORDER.asc, false, false, 10);
+    BookIndex.Hits all = index.search("tolkien", "id", ORDER.asc, false, true, 10);
+
+    assertThat(ids(live)).containsExactly(1, 2);
+    assertThat(ids(all)).containsExactly(1, 2, 5);
+    // the postings are not changed by a search
+    assertThat(ids(index.search("tolkien", "id", ORDER.asc, false, true, 10)))
+        .containsExactly(1, 2, 5);
+  }
+
+  @Test
+  void searchKeepsOnlyTheFirstBooksUpToTheLimit() {
+    BookIndex.Hits hits = index.search("tolkien", "title", ORDER.asc, false, true, 2);
+
+    assertThat(hits.getTotal()).isEqualTo(3);
+    assertThat(hits.getIds().getCardinality()).isEqualTo(3);
+    assertThat(hits.getBooks()).extracting(IndexedBook::getTitle)
+        .containsExactly("Lost Tales", "The Hobbit");
+
+    assertThat(ids(index.search("tolkien", "id", ORDER.desc, false, true, 2)))
+        .containsExactly(5, 2);
+  }
+
+  @Test
+  void fuzzySearchAcceptsTypos() {
+    assertThat(ids(index.search("tolkein", "id", ORDER.asc, true, false, 10)))
+        .containsExactly(1, 2);
+  }
+
+  @Test
+  void relevanceRanksTheTitleAboveTheDescription() {
+    BookIndex.Hits hits = index.searchRelevant("hobbit", false, false, 10);
+
+    assertThat(hits.getTotal()).isEqualTo(2);
+    assertThat(ids(hits)).containsExactly(1, 3);
+  }
+
+  @Test
+  void filterIntersectsTheValuesNewestFirst() {
+    assertThat(ids(index.filter(Map.of(BookIndex.FILTER_AUTHOR, "Tolkien"), 0, 10)))
+        .containsExactly(5, 2, 1);
+    assertThat(ids(index.filter(Map.of(BookIndex.FACET_CATEGORY, "NOVEL",
+        BookIndex.FACET_STATUS, "GOOD"), 1, 10)))
+        .containsExactly(2, 1);
+    assertThat(ids(index.filter(Map.of(BookIndex.FILTER_CODE, "CODE-0004"), 0, 10)))
+        .containsExactly(4);
+    assertThat(index.filter(Map.of(BookIndex.FILTER_AUTHOR, "Nobody"), 0, 10).getTotal())
+        .isZero();
+  }
+
+  @Test
+  void facetsCountTheHits() {
+    Map<String, Map<String, Integer>> all = index.facets(false);
+    assertThat(all.get(BookIndex.FACET_CATEGORY)).containsOnly(
+        Map.entry("NOVEL", 3), Map.entry("STUDY", 1));
+    assertThat(all.get(BookIndex.FACET_STATUS)).containsOnly(
+        Map.entry("GOOD", 3), Map.entry("OLD", 1), Map.entry("DELETED", 0));
+
+    BookIndex.Hits hits = index.filter(Map.of(BookIndex.FILTER_AUTHOR, "Tolkien"), 0, 10);
+    Map<String, Map<String, Integer>> counts = index.facets(hits.getIds());
+    assertThat(counts.get(BookIndex.FACET_CATEGORY)).containsOnly(
+        Map.entry("NOVEL", 3), Map.entry("STUDY", 0));
+    assertThat(counts.get(BookIndex.FACET_STATUS)).containsOnly(
+        Map.entry("GOOD", 2), Map.entry("OLD", 0), Map.entry("DELETED", 1));
+  }
+
+  @Test
+  void putReplacesTheOldVersion() {
+    Book changed = book(1, "CODE-0001", "There and Back Again", "Tolkien", "NOVEL", "OLD", null);
+    changed.setVersion(1);
+    index.put(changed);
+
+    assertThat(index.has(1, 1)).isTrue();
+    assertThat(index.has(1, 2)).isFalse();
+    assertThat(ids(index.search("hobbit", "id", ORDER.asc, false, false, 10)))
+        .containsExactly(3);
+    assertThat(ids(index.search("back", "id", ORDER.asc, false, false, 10)))
+        .containsExactly(1);
+    assertThat(index.facets(false).get(BookIndex.FACET_STATUS))
+        .containsEntry("GOOD", 2).containsEntry("OLD", 2);
+  }
+
+  @Test
+  void removeForgetsTheBook() {
+    index.remove(3);
+
+    assertThat(index.has(3, 0)).isFalse();
+    assertThat(ids(index.search("dune", "id", ORDER.asc, false, true, 10))).isEmpty();
+    assertThat(index.suggest("dun", 10)).isEmpty();
+  }
+
+  @Test
+  void suggestSkipsTheDeletedBooks() {
+    assertThat(index.suggest("the", 10)).extracting("text")
+        .containsExactly("The Hobbit", "The Lord of the Rings");
+    assertThat(index.suggest("tolkien", 10)).extracting("popularity")
+        .containsExactly(2);
+    assertThat(index.suggest("lost", 10)).isEmpty();
+  }
+
+  private static List<Integer> ids(BookIndex.Hits hits) {
+    return hits.getBooks().stream().map(IndexedBook::getId).toList();
+  }
+
+  private static Book book(int id, String code, String title, String author,
+      String category, String status, String description) {
+    Book book = new Book(code, title, author, category, status, description);
+    book.setId(id);
+    book.setVersion(0);
+    return book;
+  }
+}
@@ -0,0 +1,66 @@
+package myapp.book.indexes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.Test;
+
+class SuggestionTreeTest {
+
+  @Test
+  void keyIsTrimmedLowerCaseWithSingleSpaces() {
+    assertThat(SuggestionTree.keyOf("  The   Hobbit ")).isEqualTo("the hobbit");
+    assertThat(SuggestionTree.keyOf(null)).isEmpty();
+  }
+
+  @Test
+  void suggestsTheMostPopularFirst() {
+    SuggestionTree tree = new SuggestionTree(10);
+    tree.add("The Hobbit");
+    tree.add("The Hunger Games");
+    tree.add("The Hunger Games");
+    tree.add("Dune");
+
+    assertThat(tree.suggest("the h", 10))
+        .extracting(SuggestionTree.Completion::getText, SuggestionTree.Completion::getCount)
+        .containsExactly(
+            Tuple.tuple("The Hunger Games", 2),
+            Tuple.tuple("The Hobbit", 1));
+    assertThat(tree.suggest("THE HO", 10))
+        .extracting(SuggestionTree.Completion::getText)
+        .containsExactly("The Hobbit");
+    assertThat(tree.suggest("x", 10)).isEmpty();
+  }
+
+  @Test
+  void suggestStopsAtTheLimit() {
+    SuggestionTree tree = new SuggestionTree(10);
+    tree.add("Dune");
+    tree.add("Dune Messiah");
+    tree.add("Dune Messiah");
+    tree.add("Dungeons");
+
+    assertThat(tree.suggest("dun", 1))
+        .extracting(SuggestionTree.Completion::getText)
+        .containsExactly("Dune Messiah");
+  }
+
+  @Test
+  void removeForgetsATextWithoutBook() {
+    SuggestionTree tree = new SuggestionTree(10);
+    tree.add("Dune");
+    tree.add("Dune Messiah");
+    tree.add("Dune Messiah");
+
+    tree.remove("Dune Messiah");
+    assertThat(tree.suggest("dune", 10))
+        .extracting(SuggestionTree.Completion::getText, SuggestionTree.Completion::getCount)
+        .containsExactly(
+            Tuple.tuple("Dune", 1),
+            Tuple.tuple("Dune Messiah", 1));
+
+    tree.remove("Dune Messiah");
+    tree.remove("Dune");
+    assertThat(tree.suggest("d", 10)).isEmpty();
+  }
+}
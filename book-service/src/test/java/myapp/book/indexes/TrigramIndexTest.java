@@ -0,0 +1,52 @@
+package myapp.book.indexes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class TrigramIndexTest {
+
+  @Test
+  void distanceGrowsWithTheTermLength() {
+    assertThat(TrigramIndex.distanceFor(2, 2)).isZero();
+    assertThat(TrigramIndex.distanceFor(5, 2)).isEqualTo(1);
+    assertThat(TrigramIndex.distanceFor(6, 2)).isEqualTo(2);
+    assertThat(TrigramIndex.distanceFor(6, 1)).isEqualTo(1);
+  }
+
+  @Test
+  void withinDistanceCountsEdits() {
+    assertThat(TrigramIndex.withinDistance("tolkien", "tolkein", 2)).isTrue();
+    assertThat(TrigramIndex.withinDistance("tolkien", "tolkein", 1)).isFalse();
+    assertThat(TrigramIndex.withinDistance("dune", "dunes", 1)).isTrue();
+    assertThat(TrigramIndex.withinDistance("dune", "rome", 1)).isFalse();
+  }
+
+  @Test
+  void matchAcceptsTypos() {
+    TrigramIndex index = new TrigramIndex();
+    index.add("tolkien", 1);
+    index.add("hobbit", 2);
+    index.add("tolkien", 3);
+
+    assertThat(index.match("tolkein", 2)).containsExactlyInAnyOrder(1, 3);
+    assertThat(index.match("hobit", 1)).containsExactly(2);
+    assertThat(index.match("tolkein", 0)).isEmpty();
+    assertThat(index.match("tolkien", 0)).containsExactlyInAnyOrder(1, 3);
+  }
+
+  @Test
+  void removeDropsTheTermWithItsLastBook() {
+    TrigramIndex index = new TrigramIndex();
+    index.add("hobbit", 1);
+    index.add("hobbit", 2);
+
+    index.remove("hobbit", 1);
+    assertThat(index.match("hobit", 1)).containsExactly(2);
+    assertThat(index.size()).isEqualTo(1);
+
+    index.remove("hobbit", 2);
+    assertThat(index.match("hobit", 1)).isEmpty();
+    assertThat(index.size()).isZero();
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * This is the test of the schema migrations on a real PostgreSQL.
+ * It is skipped when there is no Docker to start the database.
+ * The plans of the search queries are tested by BookSearchPlanTest.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationVersion;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+@Testcontainers(disabledWithoutDocker = true)
+class BookMigrationTest {
+
+  @Container
+  static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:14.7-alpine3.17");
+
+  @Test
+  void databaseFromInitScriptsIsMigratedFromTheBaseline() throws SQLException, IOException {
+    try (Connection connection = connect(POSTGRES.getJdbcUrl());
+        Statement statement = connection.createStatement()) {
+      statement.execute("CREATE DATABASE legacy");
+    }
+
+    // a database created before Flyway, by the init scripts
+    String url = POSTGRES.getJdbcUrl().replace("/" + POSTGRES.getDatabaseName(), "/legacy");
+    try (Connection connection = connect(url);
+        Statement statement = connection.createStatement()) {
+      statement.execute(read("db/migration/V0001__schema.sql"));
+      statement.execute(read("db/migration/V0002__roles.sql"));
+    }
+
+    // the same baseline as application.yml
+    Flyway flyway = Flyway.configure()
+        .dataSource(url, POSTGRES.getUsername(), POSTGRES.getPassword())
+        .locations("classpath:db/migration")
+        .baselineOnMigrate(true)
+        .baselineVersion("2")
+        .load();
+    flyway.migrate();
+
+    assertThat(flyway.info().pending()).isEmpty();
+    assertThat(flyway.info().applied())
+        .extracting(MigrationInfo::getVersion)
+        .contains(MigrationVersion.fromVersion("0003"), MigrationVersion.fromVersion("0006"));
+
+    try (Connection connection = connect(url);
+        Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT to_regclass('book_archive') IS NOT NULL")) {
+      rs.next();
+      assertThat(rs.getBoolean(1)).isTrue();
+    }
+  }
+
+  private static Connection connect(String url) throws SQLException {
+    return DriverManager.getConnection(url, POSTGRES.getUsername(), POSTGRES.getPassword());
+  }
+
+  private static String read(String resource) throws IOException {
+    try (InputStream input = BookMigrationTest.class.getClassLoader()
+        .getResourceAsStream(resource)) {
+      return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,260 @@
+package myapp.book.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import myapp.book.PostgresTest;
+import myapp.book.dto.PaginationDto;
+import myapp.book.dto.SearchDto;
+import myapp.book.dto.book.BookSummaryDto;
+import myapp.book.entities.Book;
+import myapp.book.indexes.BookIndex;
+import myapp.book.services.BookService;
+import myapp.book.services.BookSyncService;
+import myapp.book.utils.PaginationUtil.ORDER;
+
+class BookRepositoryTest extends PostgresTest {
+
+  private static final AtomicInteger CODES = new AtomicInteger();
+
+  @Autowired
+  private BookRepository bookRepo;
+
+  @Autowired
+  private UserRepository userRepo;
+
+  @Autowired
+  private BookService bookService;
+
+  @Autowired
+  private BookSyncService syncService;
+
+  @Autowired
+  private BookIndex bookIndex;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void insertIfAbsentTakesTheIdsFromPooledBlocks() {
+    long before = lastSequenceValue();
+
+    List<Integer> ids = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      ids.add(bookRepo.insertIfAbsent(book()).orElseThrow().getId());
+    }
+
+    // ten books take at most one more block of 50
+    assertThat(lastSequenceValue() - before).isLessThanOrEqualTo(50);
+    assertThat(ids).doesNotHaveDuplicates().isSorted();
+  }
+
+  @Test
+  void insertIfAbsentSkipsATakenCode() {
+    Book book = bookRepo.insertIfAbsent(book()).orElseThrow();
+
+    Book again = book();
+    again.setCode(book.getCode());
+
+    assertThat(bookRepo.insertIfAbsent(again)).isEmpty();
+  }
+
+  @Test
+  void allocateIdsAndInsertAll() {
+    List<Integer> ids = bookRepo.allocateIds(120);
+    assertThat(ids).hasSize(120).doesNotHaveDuplicates().isSorted();
+
+    List<Book> books = new ArrayList<>();
+    for (Integer id : ids) {
+      Book book = book();
+      book.setId(id);
+      books.add(book);
+    }
+    assertThat(bookRepo.insertAll(books)).containsOnly(1);
+
+    // the codes are taken now
+    List<Integer> more = bookRepo.allocateIds(books.size());
+    for (int i = 0; i < books.size(); i++) {
+      books.get(i).setId(more.get(i));
+    }
+    assertThat(bookRepo.insertAll(books)).containsOnly(0);
+  }
+
+  @Test
+  void updateChangedWritesOnlyADifference() {
+    Book book = bookRepo.insertIfAbsent(book()).orElseThrow();
+
+    Book changes = new Book();
+    changes.setTitle("Changed title");
+    BookRepositoryCustom.Change change = bookRepo.updateChanged(book.getId(), changes)
+        .orElseThrow();
+
+    assertThat(change.getBefore().getTitle()).isEqualTo(book.getTitle());
+    assertThat(change.getAfter().getTitle()).isEqualTo("Changed title");
+    assertThat(change.getAfter().getAuthor()).isEqualTo(book.getAuthor());
+    assertThat(change.getAfter().getVersion()).isEqualTo(book.getVersion() + 1);
+
+    assertThat(bookRepo.updateChanged(book.getId(), changes)).isEmpty();
+  }
+
+  @Test
+  void holdAndUnholdKeepTheCount() {
+    int userId = user();
+    int first = bookRepo.insertIfAbsent(book()).orElseThrow().getId();
+    int second = bookRepo.insertIfAbsent(book()).orElseThrow().getId();
+
+    assertThat(userRepo.hold(userId, first, 1)).isTrue();
+    // already held, then over the maximum
+    assertThat(userRepo.hold(userId, first, 1)).isFalse();
+    assertThat(userRepo.hold(userId, second, 1)).isFalse();
+    assertThat(userRepo.isHolding(userId, first)).isTrue();
+    assertThat(holdCount(userId)).isEqualTo(1);
+
+    assertThat(userRepo.unhold(userId, first)).isTrue();
+    assertThat(userRepo.unhold(userId, first)).isFalse();
+    assertThat(holdCount(userId)).isZero();
+
+    assertThat(userRepo.hold(userId, second, 1)).isTrue();
+  }
+
+  @Test
+  void archiveDeletedMovesTheOldDeletedBooksNotHeld() {
+    int userId = user();
+    int archived = bookRepo.insertIfAbsent(book()).orElseThrow().getId();
+    int held = bookRepo.insertIfAbsent(book()).orElseThrow().getId();
+    int recent = bookRepo.insertIfAbsent(book()).orElseThrow().getId();
+    jdbcTemplate.update("UPDATE book SET status = 'DELETED', " +
+        "updated_at = CURRENT_TIMESTAMP - INTERVAL '40 days' WHERE id IN (?, ?)", archived, held);
+    jdbcTemplate.update("UPDATE book SET status = 'DELETED' WHERE id = ?", recent);
+    userRepo.hold(userId, held, 3);
+
+    List<Integer> ids = bookRepo.archiveDeleted(Instant.now().minus(Duration.ofDays(30)), 100);
+
+    assertThat(ids).contains(archived).doesNotContain(held, recent);
+    assertThat(count("book", archived)).isZero();
+    assertThat(count("book_archive", archived)).isEqualTo(1);
+    assertThat(count("book", held)).isEqualTo(1);
+  }
+
+  @Test
+  void syncAppliesTheBooksWrittenElsewhere() {
+    Instant before = bookRepo.currentTime();
+
+    // written by another instance, not through this index
+    String code = code();
+    Integer id = jdbcTemplate.queryForObject(
+        "INSERT INTO book (id, code, title, author, category, status) " +
+        "VALUES (nextval('book_id_seq'), ?, 'Written elsewhere', 'Someone', 'NOVEL', 'GOOD') " +
+        "RETURNING id", Integer.class, code);
+
+    assertThat(bookRepo.findChangedAfter(before.minusSeconds(1), 0, 1000))
+        .extracting(Book::getId).contains(id);
+
+    assertThat(syncService.sync()).isPositive();
+    assertThat(bookIndex.has(id, 0)).isTrue();
+    // applied once
+    assertThat(bookIndex.has(id, 1)).isFalse();
+  }
+
+  @Test
+  void cursorWalksEveryMatchOnce() {
+    List<Integer> created = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Book book = book();
+      book.setTitle("Cursorwalk " + i);
+      created.add(bookRepo.insertIfAbsent(book).orElseThrow().getId());
+    }
+
+    SearchDto searchDto = new SearchDto();
+    searchDto.setSearch("cursorwa");
+    searchDto.setSort("id");
+    searchDto.setOrder(ORDER.asc);
+    searchDto.setSize(2);
+    searchDto.setCursor("");
+
+    List<Integer> walked = new ArrayList<>();
+    do {
+      PaginationDto<BookSummaryDto> page = bookService.search(searchDto);
+      page.getList().forEach(book -> walked.add(book.getId()));
+      searchDto.setCursor(page.getNextCursor());
+    } while (searchDto.getCursor() != null);
+
+    assertThat(walked).containsExactlyElementsOf(created);
+  }
+
+  @Test
+  void databaseMatchesTheKeywordLikeTheIndex() {
+    List<Integer> ids = new ArrayList<>();
+    for (String[] values : new String[][] {
+        { "Samematch Alpha-Beta", "Tester", "gamma" },
+        { "Other", "Samematch", "alphabet soup" },
+        { "Presamematch", "Tester", "beta" } }) {
+      Book book = book();
+      book.setTitle(values[0]);
+      book.setAuthor(values[1]);
+      book.setDescription(values[2]);
+      book = bookRepo.insertIfAbsent(book).orElseThrow();
+      bookIndex.put(book);
+      ids.add(book.getId());
+    }
+
+    Map<String, List<Integer>> expected = Map.of(
+        "samematch", List.of(ids.get(0), ids.get(1)),
+        "samematch alph", List.of(ids.get(0), ids.get(1)),
+        "beta samem", List.of(ids.get(0)),
+        "presame", List.of(ids.get(2)));
+
+    for (Map.Entry<String, List<Integer>> keyword : expected.entrySet()) {
+      SearchDto searchDto = new SearchDto();
+      searchDto.setSearch(keyword.getKey());
+      // the description is only sorted by the database
+      searchDto.setSort("description");
+      assertThat(idsOf(bookService.search(searchDto)))
+          .containsExactlyInAnyOrderElementsOf(keyword.getValue());
+      searchDto.setSort("id");
+      assertThat(idsOf(bookService.search(searchDto)))
+          .containsExactlyInAnyOrderElementsOf(keyword.getValue());
+    }
+  }
+
+  private static List<Integer> idsOf(PaginationDto<BookSummaryDto> page) {
+    return page.getList().stream().map(BookSummaryDto::getId).toList();
+  }
+
+  private static String code() {
+    return String.format("REPO-%08d", CODES.incrementAndGet());
+  }
+
+  private static Book book() {
+    return new Book(code(), "Repository test", "Tester", "NOVEL", "GOOD", null);
+  }
+
+  private int user() {
+    return jdbcTemplate.queryForObject(
+        "INSERT INTO \"user\" (id, username, password) " +
+        "VALUES (nextval('user_id_seq'), ?, 'secret') RETURNING id",
+        Integer.class, "user-" + code());
+  }
+
+  private int holdCount(int userId) {
+    return jdbcTemplate.queryForObject(
+        "SELECT hold_count FROM \"user\" WHERE id = ?", Integer.class, userId);
+  }
+
+  private int count(String table, int id) {
+    return jdbcTemplate.queryForObject(
+        "SELECT count(*) FROM " + table + " WHERE id = ?", Integer.class, id);
+  }
+
+  private long lastSequenceValue() {
+    return jdbcTemplate.queryForObject("SELECT last_value FROM book_id_seq", Long.class);
+  }
+}
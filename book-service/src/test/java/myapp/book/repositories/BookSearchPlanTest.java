@@ -0,0 +1,144 @@
+/**
+ * This is the test of the plans of the search queries on a real PostgreSQL.
+ * The SQL is the one hibernate generates from the book specification, with
+ * its parameters, and it is planned as a generic plan, the plan a prepared
+ * statement ends up with. A predicate that only matches an index for some
+ * parameter values fails here.
+ *
+ * @author Phann Malinka
+ */
+package myapp.book.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import myapp.book.PostgresTest;
+import myapp.book.dto.SearchDto;
+import myapp.book.specifications.BookSpecification;
+import myapp.book.utils.PaginationUtil.ORDER;
+
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+    "myapp.book.repositories.BookSearchPlanTest$Recorder")
+class BookSearchPlanTest extends PostgresTest {
+
+  /**
+   * This records the SQL generated by hibernate.
+   */
+  public static class Recorder implements StatementInspector {
+
+    static final List<String> SQL = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+      SQL.add(sql);
+      return sql;
+    }
+  }
+
+  private static boolean loaded;
+
+  @Autowired
+  private BookRepository bookRepo;
+
+  @Autowired
+  private BookSpecification bookSpec;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  void load() {
+    if (loaded) {
+      return;
+    }
+    jdbcTemplate.execute(
+        "INSERT INTO book (id, code, title, author, category, description) " +
+        "SELECT nextval('book_id_seq'), 'PLAN-' || lpad(g::text, 9, '0'), " +
+        "'Title ' || md5(g::text), 'Author ' || md5((g * 7)::text), 'NOVEL', " +
+        "md5((g * 13)::text) FROM generate_series(1, 20000) g");
+    jdbcTemplate.execute("ANALYZE book");
+    loaded = true;
+  }
+
+  @Test
+  void keywordSearchUsesTrigramIndexes() {
+    // the count has no order or limit, the keyword alone picks the scan
+    Recorder.SQL.clear();
+    bookRepo.count(bookSpec.search(searchDto("zqxj", "id")));
+
+    assertThat(planOf(lastSelect()))
+        .doesNotContain("Seq Scan")
+        .contains("idx_book_trgm_category", "idx_book_trgm_title",
+            "idx_book_trgm_author", "idx_book_trgm_description");
+  }
+
+  @Test
+  void liveSearchUsesThePartialIndexes() {
+    // only the partial index of the live books is ordered by title
+    Recorder.SQL.clear();
+    bookRepo.findSummaries(bookSpec.search(searchDto("", "title")), 0, 10);
+
+    assertThat(planOf(lastSelect()))
+        .doesNotContain("Seq Scan")
+        .contains("idx_book_live_title");
+  }
+
+  private static SearchDto searchDto(String keyword, String sort) {
+    SearchDto searchDto = new SearchDto();
+    searchDto.setSearch(keyword);
+    searchDto.setSort(sort);
+    searchDto.setOrder(ORDER.asc);
+    return searchDto;
+  }
+
+  private static String lastSelect() {
+    return Recorder.SQL.stream()
+        .filter(sql -> sql.startsWith("select"))
+        .reduce((first, second) -> second)
+        .orElseThrow();
+  }
+
+  /**
+   * Explain the generic plan of a statement, its parameters unknown.
+   */
+  private String planOf(String sql) {
+    StringBuilder prepared = new StringBuilder();
+    int count = 0;
+    for (char c : sql.toCharArray()) {
+      if (c == '?') {
+        prepared.append('$').append(++count);
+      } else {
+        prepared.append(c);
+      }
+    }
+    String execute = "EXPLAIN EXECUTE search" +
+        (count == 0 ? "" : "(" + String.join(", ", Collections.nCopies(count, "NULL")) + ")");
+
+    return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+      StringBuilder plan = new StringBuilder();
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("SET plan_cache_mode = force_generic_plan");
+        statement.execute("PREPARE search AS " + prepared);
+        try (ResultSet rs = statement.executeQuery(execute)) {
+          while (rs.next()) {
+            plan.append(rs.getString(1)).append('\n');
+          }
+        }
+        statement.execute("DEALLOCATE search");
+        statement.execute("RESET plan_cache_mode");
+      }
+      return plan.toString();
+    });
+  }
+}
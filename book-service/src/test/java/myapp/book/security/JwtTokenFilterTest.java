@@ -0,0 +1,90 @@
+package myapp.book.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+class JwtTokenFilterTest {
+
+  private JwtTokenUtil jwtTokenUtil;
+
+  private UserDetailsService userDetailsService;
+
+  private JwtTokenFilter filter;
+
+  @BeforeEach
+  void setUp() {
+    jwtTokenUtil = mock(JwtTokenUtil.class);
+    userDetailsService = mock(UserDetailsService.class);
+    when(userDetailsService.loadUserByUsername("reader")).thenReturn(new UserDetailsImpl(
+        1, "reader", null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+    filter = new JwtTokenFilter();
+    ReflectionTestUtils.setField(filter, "jwtTokenUtil", jwtTokenUtil);
+    ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+    ReflectionTestUtils.setField(filter, "stateless", true);
+    ReflectionTestUtils.setField(filter, "claimsMaxAge", 300L);
+    ReflectionTestUtils.setField(filter, "userCacheSize", 10);
+  }
+
+  @AfterEach
+  void clearContext() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void staleClaimsReloadTheUserOncePerWindow() throws Exception {
+    Claims claims = Jwts.claims().setSubject("reader");
+    claims.setIssuedAt(new Date(System.currentTimeMillis() - 3600 * 1000));
+    when(jwtTokenUtil.getAllClaimsFromToken("stale")).thenReturn(claims);
+
+    for (int i = 0; i < 3; i++) {
+      filter(bearer("stale"));
+      assertThat(SecurityContextHolder.getContext().getAuthentication().getName())
+          .isEqualTo("reader");
+      SecurityContextHolder.clearContext();
+    }
+
+    verify(userDetailsService, times(1)).loadUserByUsername("reader");
+  }
+
+  @Test
+  void aReloadedUserIsTrustedOnlyForTheWindow() throws Exception {
+    ReflectionTestUtils.setField(filter, "claimsMaxAge", -1L);
+    Claims claims = Jwts.claims().setSubject("reader");
+    when(jwtTokenUtil.getAllClaimsFromToken("stale")).thenReturn(claims);
+
+    filter(bearer("stale"));
+    SecurityContextHolder.clearContext();
+    filter(bearer("stale"));
+
+    verify(userDetailsService, times(2)).loadUserByUsername("reader");
+  }
+
+  private void filter(MockHttpServletRequest request) throws Exception {
+    filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+  }
+
+  private static MockHttpServletRequest bearer(String token) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader("Authorization", "Bearer " + token);
+    return request;
+  }
+}
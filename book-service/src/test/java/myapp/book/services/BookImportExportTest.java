@@ -0,0 +1,97 @@
+package myapp.book.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import myapp.book.PostgresTest;
+import myapp.book.dto.book.BookImportResultDto;
+import myapp.book.indexes.BookIndex;
+import myapp.book.utils.CsvUtil;
+import myapp.book.utils.FormatEnum;
+import myapp.book.utils.PaginationUtil.ORDER;
+
+class BookImportExportTest extends PostgresTest {
+
+  @Autowired
+  private BookImportService importService;
+
+  @Autowired
+  private BookExportService exportService;
+
+  @Autowired
+  private BookIndex bookIndex;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void csvWithLineBreaksIsImportedAndExportedBack() throws IOException {
+    String description = "first line\nsecond, \"quoted\" line";
+    String csv = "code,title,author,category,description\n" +
+        CsvUtil.format("CSV-000000001", "Multiline", "Importer", "NOVEL", description) + "\n" +
+        CsvUtil.format("CSV-000000002", "Single", "Importer", "STUDY", "one line") + "\n";
+
+    BookImportResultDto result = importService.importBooks(input(csv), FormatEnum.CSV);
+
+    assertThat(result.getTotal()).isEqualTo(2);
+    assertThat(result.getImported()).isEqualTo(2);
+    assertThat(descriptionOf("CSV-000000001")).isEqualTo(description);
+    assertThat(bookIndex.search("importer", "id", ORDER.asc, false, false, 10).getTotal())
+        .isEqualTo(2);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    exportService.export(output, FormatEnum.CSV);
+
+    BufferedReader reader = new BufferedReader(new StringReader(
+        output.toString(StandardCharsets.UTF_8)));
+    assertThat(CsvUtil.parse(CsvUtil.readRecord(reader, 4096))).containsExactly(
+        "id", "code", "title", "author", "category", "status", "description");
+    String record;
+    List<String> exported = null;
+    while ((record = CsvUtil.readRecord(reader, 4096)) != null) {
+      List<String> values = CsvUtil.parse(record);
+      if (values.get(1).equals("CSV-000000001")) {
+        exported = values;
+      }
+    }
+    assertThat(exported).isNotNull();
+    assertThat(exported.get(6)).isEqualTo(description);
+  }
+
+  @Test
+  void ndjsonErrorsAreReportedWithTheirLine() throws IOException {
+    String ndjson =
+        "{\"code\":\"JSON-00000001\",\"title\":\"Json book\",\"author\":\"Importer\"," +
+        "\"category\":\"COMIC\"}\n" +
+        "\n" +
+        "{\"code\":\"short\",\"title\":\"Json book\",\"author\":\"Importer\"}\n" +
+        "not json\n" +
+        "{\"code\":\"JSON-00000001\",\"title\":\"Json again\",\"author\":\"Importer\"," +
+        "\"category\":\"COMIC\"}\n";
+
+    BookImportResultDto result = importService.importBooks(input(ndjson), FormatEnum.NDJSON);
+
+    assertThat(result.getTotal()).isEqualTo(4);
+    assertThat(result.getImported()).isEqualTo(1);
+    assertThat(result.getFailed()).isEqualTo(3);
+    assertThat(result.getErrors()).extracting("line").containsExactly(3L, 4L, 5L);
+  }
+
+  private String descriptionOf(String code) {
+    return jdbcTemplate.queryForObject(
+        "SELECT description FROM book WHERE code = ?", String.class, code);
+  }
+
+  private static ByteArrayInputStream input(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+}
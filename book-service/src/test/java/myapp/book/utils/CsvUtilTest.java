@@ -0,0 +1,59 @@
+package myapp.book.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+import myapp.book.exceptions.ValidationException;
+
+class CsvUtilTest {
+
+  @Test
+  void parseSplitsPlainValues() {
+    assertThat(CsvUtil.parse("a,b,,c")).containsExactly("a", "b", "", "c");
+  }
+
+  @Test
+  void parseUnquotesValues() {
+    assertThat(CsvUtil.parse("\"a,b\",\"say \"\"hi\"\"\",c"))
+        .containsExactly("a,b", "say \"hi\"", "c");
+  }
+
+  @Test
+  void parseRejectsAnUnclosedQuote() {
+    assertThatThrownBy(() -> CsvUtil.parse("a,\"b"))
+        .isInstanceOf(ValidationException.class);
+  }
+
+  @Test
+  void formatQuotesOnlyWhenNeeded() {
+    assertThat(CsvUtil.format("a", null, "b,c", "d\"e", "f\ng"))
+        .isEqualTo("a,,\"b,c\",\"d\"\"e\",\"f\ng\"");
+  }
+
+  @Test
+  void formattedRecordsAreReadBack() throws IOException {
+    String[] first = { "1", "a, b", "line one\nline \"two\"", "" };
+    String[] second = { "2", "plain" };
+    BufferedReader reader = new BufferedReader(new StringReader(
+        CsvUtil.format(first) + "\n" + CsvUtil.format(second) + "\n"));
+
+    assertThat(CsvUtil.parse(CsvUtil.readRecord(reader, 4096))).containsExactly(first);
+    assertThat(CsvUtil.parse(CsvUtil.readRecord(reader, 4096))).containsExactly(second);
+    assertThat(CsvUtil.readRecord(reader, 4096)).isNull();
+  }
+
+  @Test
+  void readRecordStopsAtTheMaxLength() throws IOException {
+    BufferedReader reader = new BufferedReader(new StringReader(
+        "1,\"never closed\n" + "x".repeat(100) + "\n" + "y".repeat(100) + "\n"));
+
+    String record = CsvUtil.readRecord(reader, 50);
+
+    assertThat(record).isEqualTo("1,\"never closed\n" + "x".repeat(100));
+    assertThat(CsvUtil.readRecord(reader, 50)).isEqualTo("y".repeat(100));
+  }
+}
@@ -1,25 +1,65 @@
 package caller;
 
+import java.time.Duration;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
+import org.springframework.cloud.client.circuitbreaker.Customizer;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.ComponentScan;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClient;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
 
 @SpringBootApplication
 @EnableDiscoveryClient
-@ComponentScan(useDefaultFilters = false)
 public class App {
 
   // Case insensitive: could also use: http://accounts-service
-  public static final String BOOKS_SERVICE_URL = "BOOK-SERVICE/api/v1";
+  public static final String BOOKS_SERVICE_URL = "http://BOOK-SERVICE/api/v1";
 
-  @LoadBalanced // Make sure to create the load-balanced template
+  public static final String BOOKS_SERVICE_CIRCUIT_BREAKER = "book-service";
+
+  // Make sure to create the load-balanced non-blocking client,
+  // with the same codecs spring boot would have given it
+  @LoadBalanced
+  @Bean
+  WebClient.Builder webClientBuilder(
+    ObjectProvider<WebClientCustomizer> customizers
+  ) {
+    WebClient.Builder builder = WebClient.builder();
+    customizers.orderedStream().forEach(customizer -> customizer.customize(builder));
+    return builder;
+  }
+
+  // the client of the book service, it logs in with the api token
+  @Bean
+  WebClient bookServiceWebClient(
+    WebClient.Builder webClientBuilder,
+    @Value("${security.API_TOKEN}") String apiToken
+  ) {
+    return webClientBuilder
+      .baseUrl(BOOKS_SERVICE_URL)
+      .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiToken)
+      .build();
+  }
+
+  // the calls to book service give up after the timeout
   @Bean
-  RestTemplate restTemplate() {
-    return new RestTemplate();
+  Customizer<ReactiveResilience4JCircuitBreakerFactory> bookServiceCircuitBreaker(
+    @Value("${book-service.timeout:2s}") Duration timeout
+  ) {
+    return factory -> factory.configure(
+      builder -> builder
+        .circuitBreakerConfig(CircuitBreakerConfig.ofDefaults())
+        .timeLimiterConfig(TimeLimiterConfig.custom().timeoutDuration(timeout).build()),
+      BOOKS_SERVICE_CIRCUIT_BREAKER
+    );
   }
 
   public static void main(String[] args) {
@@ -0,0 +1,168 @@
+/**
+ * This is the in-process cache of the books fetched from book service.
+ * A fresh book is served from memory. An expired book is still served
+ * right away while one refresh runs in the background, and it keeps
+ * being served when the refresh fails, for example when the circuit
+ * breaker is open. The least recently used book goes first when full.
+ *
+ * @author Phann Malinka
+ */
+package caller.caches;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import caller.entities.Book;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+@Component
+public class BookNearCache {
+
+  private static class Entry {
+    private final Book book;
+    private final long loadedAt;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    private Entry(Book book, long loadedAt) {
+      this.book = book;
+      this.loadedAt = loadedAt;
+    }
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(BookNearCache.class);
+
+  private final long ttlNanos;
+
+  private final Map<Integer, Entry> entries;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong staleHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong refreshFailures = new AtomicLong();
+
+  private final Timer refreshTimer;
+
+  public BookNearCache(
+    MeterRegistry registry,
+    @Value("${book-service.near-cache.ttl:30s}") Duration ttl,
+    @Value("${book-service.near-cache.max-size:10000}") int maxSize
+  ) {
+    this.ttlNanos = ttl.toNanos();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+        return size() > maxSize;
+      }
+    };
+
+    FunctionCounter.builder("book.near-cache.hits", hits, AtomicLong::get)
+      .description("books served fresh from the near cache")
+      .register(registry);
+    FunctionCounter.builder("book.near-cache.stale-hits", staleHits, AtomicLong::get)
+      .description("expired books served while refreshing")
+      .register(registry);
+    FunctionCounter.builder("book.near-cache.misses", misses, AtomicLong::get)
+      .description("books not in the near cache")
+      .register(registry);
+    FunctionCounter.builder("book.near-cache.refresh-failures", refreshFailures, AtomicLong::get)
+      .description("background refreshes that failed, the stale book is kept")
+      .register(registry);
+    Gauge.builder("book.near-cache.hit-ratio", this, BookNearCache::hitRatio)
+      .description("fresh and stale hits over all lookups")
+      .register(registry);
+    Gauge.builder("book.near-cache.size", this, BookNearCache::size)
+      .register(registry);
+    this.refreshTimer = Timer.builder("book.near-cache.refresh")
+      .description("time to refresh an expired book from book service")
+      .register(registry);
+  }
+
+  /**
+   * Get a book from the cache, or load it.
+   *
+   * @param id     an id of the book
+   * @param loader loads the book from book service, empty when not found
+   * @return Mono the book, empty when the book is not found
+   */
+  public Mono<Book> get(final int id, final Function<Integer, Mono<Book>> loader) {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(id);
+    }
+
+    if (entry == null) {
+      misses.incrementAndGet();
+      return loader.apply(id).doOnNext(book -> put(id, book));
+    }
+
+    if (System.nanoTime() - entry.loadedAt <= ttlNanos) {
+      hits.incrementAndGet();
+      return Mono.just(entry.book);
+    }
+
+    staleHits.incrementAndGet();
+
+    // only one refresh at a time for the same book
+    if (entry.refreshing.compareAndSet(false, true)) {
+      refresh(id, entry, loader);
+    }
+
+    return Mono.just(entry.book);
+  }
+
+  private void refresh(final int id, final Entry entry,
+    final Function<Integer, Mono<Book>> loader) {
+
+    final long start = System.nanoTime();
+
+    loader.apply(id)
+      .doOnNext(book -> put(id, book))
+      // the book is gone from book service
+      .switchIfEmpty(Mono.fromRunnable(() -> remove(id, entry)))
+      .subscribe(
+        book -> { },
+        e -> {
+          refreshFailures.incrementAndGet();
+          entry.refreshing.set(false);
+          logger.warn("unable to refresh book id = {}, keep serving the stale one: {}",
+            id, e.getMessage());
+        },
+        () -> refreshTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+  }
+
+  private void put(final int id, final Book book) {
+    synchronized (entries) {
+      entries.put(id, new Entry(book, System.nanoTime()));
+    }
+  }
+
+  private void remove(final int id, final Entry entry) {
+    synchronized (entries) {
+      entries.remove(id, entry);
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public double hitRatio() {
+    long served = hits.get() + staleHits.get();
+    long total = served + misses.get();
+    return total == 0 ? 0 : (double) served / total;
+  }
+}
@@ -5,14 +5,16 @@
  */
 package caller.controllers;
 
-import java.net.URISyntaxException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestClientException;
+import caller.dto.ApiResponseDto;
+import caller.dto.BookDataApiResponseDto;
 import caller.services.BookService;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping(value = "/api/v1/caller/book")
@@ -25,10 +27,16 @@ public class CallerController {
   }
   
   @GetMapping(value = "{id}")
-  public ResponseEntity<?> fetchBookDetail(
-    final @PathVariable String id
-  ) throws RestClientException, URISyntaxException {
-      //ResponseEntity<BookDataApiResponseDto> response = bookService.detail(id);
-      return null;
-    }
+  public Mono<ResponseEntity<ApiResponseDto>> fetchBookDetail(
+    final @PathVariable int id
+  ) {
+    return bookService.detail(id)
+      .map(book -> ResponseEntity.<ApiResponseDto>ok(new BookDataApiResponseDto(
+        0,
+        String.format("the resource id = %s is fetched successfully", id),
+        null,
+        book)))
+      .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+        new ApiResponseDto(103, String.format("book id = %d is not found", id))));
+  }
 }
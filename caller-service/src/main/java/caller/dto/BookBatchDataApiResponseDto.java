@@ -0,0 +1,18 @@
+/**
+ * This is the api response of the batch fetch.
+ * 
+ * @author Phann Malinka
+ */
+package caller.dto;
+
+import java.util.List;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class BookBatchDataApiResponseDto extends ApiResponseDto {
+    private List<BookBatchItemDto> data;
+}
@@ -0,0 +1,21 @@
+/**
+ * This is one book of the batch fetch response.
+ *
+ * @author Phann Malinka
+ */
+package caller.dto;
+
+import caller.entities.Book;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class BookBatchItemDto {
+    private int id;
+    private int status;
+    private String message;
+    private Book data;
+}
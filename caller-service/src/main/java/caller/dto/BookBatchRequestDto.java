@@ -0,0 +1,20 @@
+/**
+ * This is the request to fetch many books at once.
+ *
+ * @author Phann Malinka
+ */
+package caller.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBatchRequestDto {
+    private List<Integer> ids;
+}
@@ -0,0 +1,18 @@
+/**
+ * This exception is used when the book service can not be reached,
+ * is too slow, or the circuit breaker is open.
+ *
+ * @author Phann Malinka
+ */
+package caller.exceptions;
+
+public class BookServiceException extends RuntimeException {
+
+  public BookServiceException(String msg) {
+    super(msg);
+  }
+
+  public BookServiceException(String msg, Throwable t) {
+    super(msg, t);
+  }
+}
@@ -37,4 +37,23 @@ public class GlobalExceptionHandler {
       HttpStatus.INTERNAL_SERVER_ERROR
     );
   }
+
+  /**
+   * The book service is down, too slow, or the circuit breaker is open.
+   *
+   * @param ex the BookServiceException
+   * @return ApiResponseDto
+   */
+  @ExceptionHandler(BookServiceException.class)
+  public ResponseEntity<ApiResponseDto> handleBookService(
+    BookServiceException ex
+  ) {
+    return new ResponseEntity<ApiResponseDto>(
+      new ApiResponseDto(
+        102,
+        String.format("Error: %s", ex.getMessage())
+      ),
+      HttpStatus.SERVICE_UNAVAILABLE
+    );
+  }
 }
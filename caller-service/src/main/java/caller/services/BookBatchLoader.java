@@ -0,0 +1,165 @@
+/**
+ * This is the loader that groups the book lookups into batches.
+ * The lookups are buffered for a short window or until the batch is
+ * full, then sent to the book service as one batch request, and each
+ * book is given back to the lookup waiting for it.
+ *
+ * @author Phann Malinka
+ */
+package caller.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import caller.App;
+import caller.dto.BookBatchDataApiResponseDto;
+import caller.dto.BookBatchItemDto;
+import caller.dto.BookBatchRequestDto;
+import caller.entities.Book;
+import caller.exceptions.BookServiceException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+@Service
+public class BookBatchLoader {
+
+  private static final int STATUS_SUCCESS = 0;
+
+  /**
+   * This is one lookup waiting for its book.
+   */
+  private static class Pending {
+    private final int id;
+    private final Sinks.One<Book> sink = Sinks.one();
+
+    private Pending(int id) {
+      this.id = id;
+    }
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(BookBatchLoader.class);
+
+  private final WebClient webClient;
+
+  private final ReactiveCircuitBreaker circuitBreaker;
+
+  private final int maxSize;
+
+  private final Duration window;
+
+  private final Sinks.Many<Pending> queue = Sinks.many().unicast().onBackpressureBuffer();
+
+  private Disposable subscription;
+
+  public BookBatchLoader(
+    WebClient bookServiceWebClient,
+    ReactiveCircuitBreakerFactory<?, ?> circuitBreakerFactory,
+    @Value("${book-service.batch.max-size:50}") int maxSize,
+    @Value("${book-service.batch.window:5ms}") Duration window
+  ) {
+    this.webClient = bookServiceWebClient;
+    this.circuitBreaker = circuitBreakerFactory.create(
+      App.BOOKS_SERVICE_CIRCUIT_BREAKER);
+    this.maxSize = maxSize;
+    this.window = window;
+  }
+
+  @PostConstruct
+  public void start() {
+    subscription = queue.asFlux()
+      .bufferTimeout(maxSize, window)
+      .flatMap(this::dispatch)
+      .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (subscription != null) {
+      subscription.dispose();
+    }
+  }
+
+  /**
+   * Queue a lookup of a book.
+   *
+   * @param id an id of the book
+   * @return Mono the book, empty when the book is not found
+   */
+  public Mono<Book> load(final int id) {
+    Pending pending = new Pending(id);
+
+    // the sink does not accept concurrent emissions
+    Sinks.EmitResult result;
+    synchronized (queue) {
+      result = queue.tryEmitNext(pending);
+    }
+    if (result.isFailure()) {
+      return Mono.error(new BookServiceException(
+        String.format("unable to queue book id = %d, %s", id, result)));
+    }
+
+    return pending.sink.asMono();
+  }
+
+  /**
+   * Send one batch and give every book to its lookup.
+   * It never fails, errors are given to the waiting lookups instead.
+   */
+  private Mono<Void> dispatch(final List<Pending> batch) {
+    Set<Integer> ids = new LinkedHashSet<>();
+    for (Pending pending : batch) {
+      ids.add(pending.id);
+    }
+
+    logger.debug("fetch {} books in one batch from book service", ids.size());
+
+    Mono<Map<Integer, BookBatchItemDto>> call = webClient.post()
+      .uri("/book/batch")
+      .bodyValue(new BookBatchRequestDto(new ArrayList<>(ids)))
+      .retrieve()
+      .bodyToMono(BookBatchDataApiResponseDto.class)
+      .map(response -> {
+        Map<Integer, BookBatchItemDto> items = new HashMap<>();
+        if (response.getData() != null) {
+          for (BookBatchItemDto item : response.getData()) {
+            items.put(item.getId(), item);
+          }
+        }
+        return items;
+      });
+
+    return circuitBreaker.run(call, t -> Mono.error(new BookServiceException(
+        String.format("unable to fetch books = %s from book service", ids), t)))
+      .doOnNext(items -> {
+        for (Pending pending : batch) {
+          BookBatchItemDto item = items.get(pending.id);
+          if (item != null && item.getStatus() == STATUS_SUCCESS && item.getData() != null) {
+            pending.sink.tryEmitValue(item.getData());
+          } else {
+            pending.sink.tryEmitEmpty();
+          }
+        }
+      })
+      .doOnError(e -> {
+        for (Pending pending : batch) {
+          pending.sink.tryEmitError(e);
+        }
+      })
+      .onErrorResume(e -> Mono.empty())
+      .then();
+  }
+}
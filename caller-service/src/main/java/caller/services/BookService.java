@@ -1,10 +1,104 @@
+/**
+ * This is the non-blocking client of the book service.
+ * Every call goes through the circuit breaker, and the concurrent
+ * requests for the same book share one call to the book service.
+ *
+ * @author Phann Malinka
+ */
 package caller.services;
 
-import org.springframework.context.annotation.Configuration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import caller.App;
+import caller.caches.BookNearCache;
+import caller.dto.BookDataApiResponseDto;
+import caller.entities.Book;
+import caller.exceptions.BookServiceException;
+import reactor.core.publisher.Mono;
 
 @Service
-@Configuration
 public class BookService {
 
+  private final Logger logger = LoggerFactory.getLogger(BookService.class);
+
+  private final WebClient webClient;
+
+  private final ReactiveCircuitBreaker circuitBreaker;
+
+  private final BookBatchLoader batchLoader;
+
+  private final BookNearCache nearCache;
+
+  // group the lookups into batch requests instead of one call per book
+  private final boolean batchEnabled;
+
+  // book id -> the call in flight for that book
+  private final Map<Integer, Mono<Book>> inFlight = new ConcurrentHashMap<>();
+
+  public BookService(
+    WebClient bookServiceWebClient,
+    ReactiveCircuitBreakerFactory<?, ?> circuitBreakerFactory,
+    BookBatchLoader batchLoader,
+    BookNearCache nearCache,
+    @Value("${book-service.batch.enabled:true}") boolean batchEnabled
+  ) {
+    this.webClient = bookServiceWebClient;
+    this.circuitBreaker = circuitBreakerFactory.create(
+      App.BOOKS_SERVICE_CIRCUIT_BREAKER);
+    this.batchLoader = batchLoader;
+    this.nearCache = nearCache;
+    this.batchEnabled = batchEnabled;
+  }
+
+  /**
+   * Fetch the book detail.
+   * The book comes from the near cache when it is there.
+   *
+   * @param id an id of the book
+   * @return Mono the book, empty when the book is not found
+   */
+  public Mono<Book> detail(final int id) {
+    return nearCache.get(id, this::load);
+  }
+
+  /**
+   * Load the book from book service.
+   * A request for a book already being fetched waits for that call
+   * instead of making another one.
+   */
+  private Mono<Book> load(final int id) {
+    return inFlight.computeIfAbsent(id, key -> fetch(key)
+      .doFinally(signal -> inFlight.remove(key))
+      .cache());
+  }
+
+  /**
+   * Call the book service, in a batch when it is enabled.
+   */
+  private Mono<Book> fetch(final int id) {
+    if (batchEnabled) {
+      return batchLoader.load(id);
+    }
+
+    logger.debug("fetch book id = {} from book service", id);
+
+    Mono<Book> call = webClient.get()
+      .uri("/book/{id}", id)
+      .retrieve()
+      .bodyToMono(BookDataApiResponseDto.class)
+      .flatMap(response -> Mono.justOrEmpty(response.getData()))
+      // a missing book is an answer, not a failure of the book service
+      .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty());
+
+    return circuitBreaker.run(call, t -> Mono.error(new BookServiceException(
+      String.format("unable to fetch book id = %d from book service", id), t)));
+  }
 }